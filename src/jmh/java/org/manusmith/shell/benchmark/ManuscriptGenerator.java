@@ -0,0 +1,169 @@
+package org.manusmith.shell.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates deterministic manuscript-like benchmark inputs: narrative paragraphs with dialogue,
+ * inner quotes, double-hyphen dashes, ellipses and scene breaks, i.e. text every typography rule
+ * has work to do on. Output is plain ASCII, so the size in chars equals the size in bytes.
+ */
+final class ManuscriptGenerator {
+
+    private static final String[] WORDS = {
+            "the", "night", "was", "quiet", "and", "she", "walked", "along", "river", "road",
+            "without", "looking", "back", "at", "house", "where", "he", "still", "waited", "for",
+            "letter", "that", "never", "came", "window", "light", "slowly", "faded", "into", "grey"
+    };
+
+    private ManuscriptGenerator() {} // Private constructor for utility class
+
+    /**
+     * Parses a size parameter such as "10KB", "1MB" or "50MB" into bytes
+     */
+    static int parseSize(String size) {
+        if (size.endsWith("MB")) {
+            return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024 * 1024;
+        }
+        if (size.endsWith("KB")) {
+            return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024;
+        }
+        return Integer.parseInt(size);
+    }
+
+    /**
+     * Generates a manuscript of exactly {@code length} chars
+     */
+    static String text(int length) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(length + 512);
+        int paragraph = 0;
+        while (sb.length() < length) {
+            if (paragraph > 0 && paragraph % 40 == 0) {
+                sb.append(paragraph % 80 == 0 ? "***" : "---").append("\n\n");
+            }
+            appendParagraph(sb, random);
+            sb.append("\n\n");
+            paragraph++;
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+
+    /**
+     * Generates the same manuscript as Markdown, with chapter headings and emphasis
+     */
+    static String markdown(int length) {
+        String text = text(length);
+        StringBuilder sb = new StringBuilder(length + 1024);
+        int chapter = 1;
+        int paragraphs = 0;
+        for (String paragraph : text.split("\n\n")) {
+            if (paragraphs++ % 60 == 0) {
+                sb.append("# Chapter ").append(chapter++).append("\n\n");
+            }
+            sb.append(paragraph.replace(" quiet ", " *quiet* ")).append("\n\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the manuscript as a minimal ODF text document, one text:p per paragraph
+     */
+    static void writeOdt(String text, Path target) throws IOException {
+        try (OutputStream out = Files.newOutputStream(target);
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            // The mimetype entry must come first and be stored uncompressed
+            byte[] mimetype = "application/vnd.oasis.opendocument.text".getBytes(StandardCharsets.US_ASCII);
+            ZipEntry mimetypeEntry = new ZipEntry("mimetype");
+            mimetypeEntry.setMethod(ZipEntry.STORED);
+            mimetypeEntry.setSize(mimetype.length);
+            CRC32 crc = new CRC32();
+            crc.update(mimetype);
+            mimetypeEntry.setCrc(crc.getValue());
+            zip.putNextEntry(mimetypeEntry);
+            zip.write(mimetype);
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("META-INF/manifest.xml"));
+            zip.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<manifest:manifest xmlns:manifest=\"urn:oasis:names:tc:opendocument:xmlns:manifest:1.0\" manifest:version=\"1.2\">\n"
+                    + " <manifest:file-entry manifest:full-path=\"/\" manifest:media-type=\"application/vnd.oasis.opendocument.text\"/>\n"
+                    + " <manifest:file-entry manifest:full-path=\"content.xml\" manifest:media-type=\"text/xml\"/>\n"
+                    + "</manifest:manifest>\n").getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("content.xml"));
+            Writer writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<office:document-content xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\""
+                    + " xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\" office:version=\"1.2\">"
+                    + "<office:body><office:text>");
+            for (String paragraph : text.split("\n\n")) {
+                writer.write("<text:p>");
+                writer.write(paragraph.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                        .replace("\n", "<text:line-break/>"));
+                writer.write("</text:p>");
+            }
+            writer.write("</office:text></office:body></office:document-content>");
+            writer.flush();
+            zip.closeEntry();
+        }
+    }
+
+    private static void appendParagraph(StringBuilder sb, Random random) {
+        int sentences = 3 + random.nextInt(5);
+        for (int s = 0; s < sentences; s++) {
+            if (s > 0) {
+                sb.append(' ');
+            }
+            switch (random.nextInt(6)) {
+                case 0 -> {
+                    sb.append('"');
+                    appendWords(sb, random, 4 + random.nextInt(8));
+                    sb.append(random.nextBoolean() ? "...\"" : ",\" she said.");
+                }
+                case 1 -> {
+                    appendWords(sb, random, 3 + random.nextInt(5));
+                    sb.append(" 'maybe ");
+                    appendWords(sb, random, 2 + random.nextInt(3));
+                    sb.append("' he thought.");
+                }
+                case 2 -> {
+                    appendWords(sb, random, 3 + random.nextInt(5));
+                    sb.append(" -- ");
+                    appendWords(sb, random, 3 + random.nextInt(5));
+                    sb.append('.');
+                }
+                case 3 -> {
+                    appendWords(sb, random, 3 + random.nextInt(5));
+                    sb.append("--");
+                    appendWords(sb, random, 2 + random.nextInt(4));
+                    sb.append("...");
+                }
+                default -> {
+                    appendWords(sb, random, 6 + random.nextInt(12));
+                    sb.append('.');
+                }
+            }
+        }
+    }
+
+    private static void appendWords(StringBuilder sb, Random random, int count) {
+        for (int w = 0; w < count; w++) {
+            if (w > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.manusmith.shell.benchmark;
+
+import org.manusmith.shell.service.ConfigurationService;
+import org.manusmith.shell.service.EngineBridge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of {@link EngineBridge#quickConvert(File, File)} for every supported conversion on
+ * generated manuscripts. Throughput in MB/s is measured against the size of the input file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class QuickConvertBenchmark {
+
+    @Param({"txt_docx", "docx_txt", "md_txt", "odt_txt"})
+    public String conversion;
+
+    @Param({"10KB", "1MB", "50MB"})
+    public String size;
+
+    private EngineBridge engineBridge;
+    private Path workDirectory;
+    private File inputFile;
+    private File outputFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Generated 50MB inputs sit right at the default upload limit
+        ConfigurationService.getInstance().getProcessingConfig().setMaxFileSizeMB(1024);
+        engineBridge = new EngineBridge();
+        workDirectory = Files.createTempDirectory("manusmith-bench");
+
+        String text = ManuscriptGenerator.text(ManuscriptGenerator.parseSize(size));
+        String source = conversion.substring(0, conversion.indexOf('_'));
+        String target = conversion.substring(conversion.indexOf('_') + 1);
+        inputFile = workDirectory.resolve("input." + source).toFile();
+        outputFile = workDirectory.resolve("output." + target).toFile();
+
+        switch (source) {
+            case "txt" -> Files.writeString(inputFile.toPath(), text);
+            case "md" -> Files.writeString(inputFile.toPath(), ManuscriptGenerator.markdown(text.length()));
+            case "odt" -> ManuscriptGenerator.writeOdt(text, inputFile.toPath());
+            case "docx" -> {
+                File txt = workDirectory.resolve("source.txt").toFile();
+                Files.writeString(txt.toPath(), text);
+                engineBridge.quickConvert(txt, inputFile);
+                Files.delete(txt.toPath());
+            }
+            default -> throw new IllegalArgumentException("Unknown conversion: " + conversion);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(workDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public File quickConvert(Throughput throughput) throws IOException {
+        engineBridge.quickConvert(inputFile, outputFile);
+        throughput.processed(inputFile.length());
+        return outputFile;
+    }
+}
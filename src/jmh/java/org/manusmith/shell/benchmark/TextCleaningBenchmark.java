@@ -0,0 +1,53 @@
+package org.manusmith.shell.benchmark;
+
+import org.manusmith.shell.service.ConfigurationService;
+import org.manusmith.shell.service.EngineBridge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link EngineBridge#cleanText(String, String)} per typography profile on
+ * generated manuscripts. The result cache is disabled so every invocation does the full work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TextCleaningBenchmark {
+
+    @Param({"HU", "DE", "EN", "Shunn"})
+    public String profile;
+
+    @Param({"10KB", "1MB", "50MB"})
+    public String size;
+
+    private EngineBridge engineBridge;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        ConfigurationService.getInstance().getPerformanceConfig().setCleaningCacheMaxChars(0);
+        engineBridge = new EngineBridge();
+        text = ManuscriptGenerator.text(ManuscriptGenerator.parseSize(size));
+    }
+
+    @Benchmark
+    public String cleanText(Throughput throughput) {
+        String result = engineBridge.cleanText(text, profile);
+        throughput.processed(text.length());
+        return result;
+    }
+}
@@ -0,0 +1,27 @@
+package org.manusmith.shell.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary JMH result counting the megabytes of input processed, which JMH reports as a rate
+ * next to ops/s: the "megabytes" line of a result is the throughput in MB/s.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        megabytes = 0;
+    }
+
+    void processed(long bytes) {
+        megabytes += bytes / (1024.0 * 1024.0);
+    }
+}
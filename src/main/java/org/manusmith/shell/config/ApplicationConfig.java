@@ -162,6 +162,9 @@ public class ApplicationConfig {
         @Min(1)
         @Max(500)
         private int maxFileSizeMB = 50;
+        @Min(1)
+        @Max(500)
+        private int largeDocumentThresholdMB = 20;
         private Map<String, List<String>> supportedFormats;
         private BackupConfig backup;
 
@@ -171,6 +174,9 @@ public class ApplicationConfig {
         public int getMaxFileSizeMB() { return maxFileSizeMB; }
         public void setMaxFileSizeMB(int maxFileSizeMB) { this.maxFileSizeMB = maxFileSizeMB; }
 
+        public int getLargeDocumentThresholdMB() { return largeDocumentThresholdMB; }
+        public void setLargeDocumentThresholdMB(int largeDocumentThresholdMB) { this.largeDocumentThresholdMB = largeDocumentThresholdMB; }
+
         public Map<String, List<String>> getSupportedFormats() { return supportedFormats; }
         public void setSupportedFormats(Map<String, List<String>> supportedFormats) { this.supportedFormats = supportedFormats; }
 
@@ -203,6 +209,14 @@ public class ApplicationConfig {
         @Min(1)
         @Max(10)
         private int maxConcurrentOperations = 2;
+        @Min(65536)
+        private int parallelCleaningThresholdChars = 1_000_000;
+        @Min(0)
+        @Max(5000)
+        private int previewDebounceMillis = 150;
+        @Min(0)
+        private long cleaningCacheMaxChars = 8_000_000;
+        private boolean parallelPartTransforms = true;
 
         public boolean isAsyncProcessing() { return asyncProcessing; }
         public void setAsyncProcessing(boolean asyncProcessing) { this.asyncProcessing = asyncProcessing; }
@@ -212,6 +226,18 @@ public class ApplicationConfig {
 
         public int getMaxConcurrentOperations() { return maxConcurrentOperations; }
         public void setMaxConcurrentOperations(int maxConcurrentOperations) { this.maxConcurrentOperations = maxConcurrentOperations; }
+
+        public int getParallelCleaningThresholdChars() { return parallelCleaningThresholdChars; }
+        public void setParallelCleaningThresholdChars(int parallelCleaningThresholdChars) { this.parallelCleaningThresholdChars = parallelCleaningThresholdChars; }
+
+        public int getPreviewDebounceMillis() { return previewDebounceMillis; }
+        public void setPreviewDebounceMillis(int previewDebounceMillis) { this.previewDebounceMillis = previewDebounceMillis; }
+
+        public long getCleaningCacheMaxChars() { return cleaningCacheMaxChars; }
+        public void setCleaningCacheMaxChars(long cleaningCacheMaxChars) { this.cleaningCacheMaxChars = cleaningCacheMaxChars; }
+
+        public boolean isParallelPartTransforms() { return parallelPartTransforms; }
+        public void setParallelPartTransforms(boolean parallelPartTransforms) { this.parallelPartTransforms = parallelPartTransforms; }
     }
 
     public static class MetricsConfig {
@@ -3,6 +3,7 @@ package org.manusmith.shell.controller;
 import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
 import javafx.scene.input.DragEvent;
@@ -11,17 +12,21 @@ import javafx.scene.input.TransferMode;
 import javafx.scene.layout.VBox;
 import org.manusmith.shell.dto.AuthorMeta;
 import org.manusmith.shell.dto.ConvertRequest;
+import org.manusmith.shell.dto.DocxTransform;
 import org.manusmith.shell.dto.FormattingPrefs;
+import org.manusmith.shell.dto.ManuscriptFont;
 import org.manusmith.shell.service.EngineBridge;
 import org.manusmith.shell.service.FileDialogs;
 import org.manusmith.shell.service.PreferencesService;
 import org.manusmith.shell.service.SharedDataService;
 import org.manusmith.shell.service.StatusService;
 import org.manusmith.shell.service.ValidationService;
+import org.manusmith.shell.service.WordCountService;
 import org.manusmith.shell.util.Fx;
 import org.manusmith.shell.util.Strings;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -40,11 +45,19 @@ public class ConvertController {
     @FXML private TextField tfTitle;
     @FXML private TextField tfWords;
     @FXML private CheckBox cbItalicToUnderline;
+    @FXML private CheckBox cbShunnFormat;
+    @FXML private ChoiceBox<ManuscriptFont> cbFont;
+    @FXML private CheckBox cbRoundWords;
 
     private FileDialogs fileDialogs;
     private EngineBridge engineBridge;
     private ValidationService validationService;
     private PreferencesService preferencesService;
+    private WordCountService wordCountService;
+    private Task<Long> wordCountTask;
+    private long exactWords = -1;
+    // The count last put in the word field, to leave a count the user typed alone
+    private String shownWords;
     
     private static final String DRAG_IDLE_STYLE = "-fx-border-color: #d0d0d0; -fx-border-style: dashed; -fx-border-width: 2; -fx-background-color: #fafafa; -fx-border-radius: 8; -fx-background-radius: 8;";
     private static final String DRAG_HOVER_STYLE = "-fx-border-color: #2196F3; -fx-border-style: dashed; -fx-border-width: 2; -fx-background-color: #e3f2fd; -fx-border-radius: 8; -fx-background-radius: 8;";
@@ -55,9 +68,14 @@ public class ConvertController {
         this.engineBridge = new EngineBridge();
         this.validationService = new ValidationService();
         this.preferencesService = new PreferencesService();
+        this.wordCountService = new WordCountService();
+        cbFont.getItems().setAll(ManuscriptFont.values());
+        cbFont.setValue(ManuscriptFont.COURIER);
+        cbFont.disableProperty().bind(cbShunnFormat.selectedProperty().not());
         loadPreferences();
         setupDragAndDrop();
         setupAutoOutputUpdate();
+        setupWordCount();
     }
 
     private void loadPreferences() {
@@ -113,9 +131,13 @@ public class ConvertController {
         SharedDataService.getInstance().setAuthorMeta(authorMeta);
 
         FormattingPrefs formattingPrefs = new FormattingPrefs(cbItalicToUnderline.isSelected());
+        List<DocxTransform> transforms = new ArrayList<>(DocxTransform.fromPrefs(formattingPrefs));
+        if (cbShunnFormat.isSelected()) {
+            transforms.add(new DocxTransform.ShunnFormat(authorMeta, cbFont.getValue()));
+        }
 
         ConvertRequest request = new ConvertRequest(
-                new File(tfInput.getText()), new File(tfOutput.getText()), authorMeta, formattingPrefs
+                new File(tfInput.getText()), new File(tfOutput.getText()), authorMeta, formattingPrefs, transforms
         );
 
         List<String> errors = validationService.validate(request);
@@ -176,12 +198,7 @@ public class ConvertController {
             // Check if the dragged files contain supported formats
             Dragboard db = event.getDragboard();
             List<File> files = db.getFiles();
-            boolean hasSupportedFile = files.stream()
-                    .anyMatch(file -> {
-                        String fileName = file.getName().toLowerCase();
-                        return fileName.endsWith(".docx") || fileName.endsWith(".odt") || 
-                               fileName.endsWith(".md") || fileName.endsWith(".txt");
-                    });
+            boolean hasSupportedFile = files.stream().anyMatch(this::isSupportedFile);
             
             if (hasSupportedFile) {
                 event.acceptTransferModes(TransferMode.COPY);
@@ -198,11 +215,7 @@ public class ConvertController {
             List<File> files = db.getFiles();
             // Find the first supported file
             Optional<File> supportedFile = files.stream()
-                    .filter(file -> {
-                        String fileName = file.getName().toLowerCase();
-                        return fileName.endsWith(".docx") || fileName.endsWith(".odt") || 
-                               fileName.endsWith(".md") || fileName.endsWith(".txt");
-                    })
+                    .filter(this::isSupportedFile)
                     .findFirst();
                     
             if (supportedFile.isPresent()) {
@@ -225,6 +238,72 @@ public class ConvertController {
         event.consume();
     }
     
+    private boolean isSupportedFile(File file) {
+        String fileName = file.getName().toLowerCase();
+        return fileName.endsWith(".docx") || fileName.endsWith(".odt") ||
+               fileName.endsWith(".md") || fileName.endsWith(".txt");
+    }
+
+    private void setupWordCount() {
+        // Count in the background whenever the input changes, however it was selected
+        tfInput.textProperty().addListener((observable, oldValue, newValue) -> startWordCount(newValue));
+        cbRoundWords.selectedProperty().addListener((observable, oldValue, newValue) -> showWordCount());
+    }
+
+    private void startWordCount(String inputPath) {
+        if (wordCountTask != null) {
+            wordCountTask.cancel();
+            wordCountTask = null;
+        }
+        exactWords = -1;
+        shownWords = null;
+        tfWords.clear();
+        if (Strings.isBlank(inputPath)) {
+            return;
+        }
+        File inputFile = new File(inputPath);
+        if (!inputFile.isFile() || !isSupportedFile(inputFile)) {
+            return;
+        }
+
+        Task<Long> task = new Task<>() {
+            @Override
+            protected Long call() throws Exception {
+                return wordCountService.countWords(inputFile);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (task == wordCountTask) {
+                exactWords = task.getValue();
+                showWordCount();
+                StatusService.getInstance().updateStatus("Word count: " + exactWords + " (" + inputFile.getName() + ")");
+            }
+        });
+        task.setOnFailed(e -> {
+            if (task == wordCountTask) {
+                StatusService.getInstance().updateStatus("Could not count words: " + task.getException().getMessage());
+            }
+        });
+        wordCountTask = task;
+
+        Thread thread = new Thread(task, "word-count");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void showWordCount() {
+        if (exactWords < 0) {
+            return;
+        }
+        String current = tfWords.getText();
+        if (!Strings.isBlank(current) && !current.equals(shownWords)) {
+            return;
+        }
+        long words = cbRoundWords.isSelected() ? WordCountService.roundShunn(exactWords) : exactWords;
+        shownWords = String.valueOf(words);
+        tfWords.setText(shownWords);
+    }
+
     @FXML
     private void onPreview() {
         // Preview functionality - currently placeholder
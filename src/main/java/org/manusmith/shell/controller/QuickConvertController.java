@@ -8,6 +8,7 @@ import javafx.scene.input.DragEvent;
 import javafx.scene.input.Dragboard;
 import javafx.scene.input.TransferMode;
 import javafx.scene.layout.StackPane;
+import org.manusmith.shell.service.ConverterRegistry;
 import org.manusmith.shell.service.EngineBridge;
 import org.manusmith.shell.service.StatusService;
 
@@ -22,12 +23,14 @@ public class QuickConvertController {
     @FXML private ProgressIndicator progressIndicator;
 
     private EngineBridge engineBridge;
+    private ConverterRegistry converterRegistry;
     private static final String IDLE_STYLE = "-fx-border-color: #a0a0a0; -fx-border-style: dashed; -fx-background-color: #f8f8f8;";
     private static final String HOVER_STYLE = "-fx-border-color: #009688; -fx-border-style: dashed; -fx-background-color: #e0f2f1;";
 
     @FXML
     public void initialize() {
         this.engineBridge = new EngineBridge();
+        this.converterRegistry = ConverterRegistry.getInstance();
         setupDragAndDrop();
     }
 
@@ -76,21 +79,12 @@ public class QuickConvertController {
                     }
                     String inputName = file.getName().toLowerCase(java.util.Locale.ROOT);
                     String baseName = inputName.replaceFirst("[.][^.]+$", "");
-                    String outputFileName;
-
-                    if (inputName.endsWith(".txt")) {
-                        outputFileName = baseName + "_converted.docx";
-                    } else if (inputName.endsWith(".docx")) {
-                        outputFileName = baseName + "_converted.txt";
-                    } else if (inputName.endsWith(".md")) {
-                        outputFileName = baseName + "_converted.txt";
-                    } else if (inputName.endsWith(".odt")) {
-                        outputFileName = baseName + "_converted.txt";
-                    } else {
+                    String targetFormat = converterRegistry.getDefaultTarget(ConverterRegistry.formatOf(file));
+                    if (targetFormat == null) {
                         System.err.println("Skipping unsupported file type: " + file.getName());
                         continue; // Skip this file
                     }
-                    File outputFile = new File(outDir, outputFileName);
+                    File outputFile = new File(outDir, baseName + "_converted." + targetFormat);
 
                     engineBridge.quickConvert(file, outputFile);
                     processedCount++;
@@ -1,5 +1,6 @@
 package org.manusmith.shell.controller;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.concurrent.Task;
 import javafx.fxml.FXML;
@@ -9,16 +10,24 @@ import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+import org.manusmith.shell.service.ConfigurationService;
 import org.manusmith.shell.service.DocxReaderService;
 import org.manusmith.shell.service.EngineBridge;
 import org.manusmith.shell.service.FileDialogs;
+import org.manusmith.shell.service.MetricsService;
 import org.manusmith.shell.service.PreferencesService;
 import org.manusmith.shell.service.StatusService;
+import org.manusmith.shell.service.TypographyEngine;
+import org.manusmith.shell.util.ErrorHandlerUtil;
 import org.manusmith.shell.util.Fx;
+import org.manusmith.shell.util.PreviewPipeline;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Locale;
 import java.util.Optional;
 
 public class TypoFixController {
@@ -35,6 +44,12 @@ public class TypoFixController {
     private DocxReaderService docxReaderService;
     private PreferencesService preferencesService;
     private File currentFile;
+    // The text as loaded, to tell whether it was edited before a DOCX is saved
+    private String loadedText;
+    private PreviewPipeline<PreviewRequest, String> previewPipeline;
+    // Confined to the preview pipeline's worker thread
+    private TypographyEngine.Session previewSession;
+    private String previewProfile;
 
     @FXML
     public void initialize() {
@@ -46,6 +61,14 @@ public class TypoFixController {
         cbProfile.setItems(FXCollections.observableArrayList("HU", "EN", "DE", "Shunn"));
         cbProfile.setValue("HU");
 
+        int debounceMillis = ConfigurationService.getInstance().getPerformanceConfig().getPreviewDebounceMillis();
+        this.previewPipeline = new PreviewPipeline<>("typofix-preview", Duration.ofMillis(debounceMillis),
+                this::cleanForPreview,
+                fixedText -> taPreview.setText(fixedText),
+                ex -> StatusService.getInstance().updateStatus("Error updating preview: " + ex.getMessage()),
+                MetricsService.getInstance()::recordPreviewLatency,
+                Platform::runLater);
+
         taOriginal.textProperty().addListener((obs, old, aNew) -> updatePreview());
         cbProfile.valueProperty().addListener((obs, old, aNew) -> updatePreview());
     }
@@ -62,7 +85,7 @@ public class TypoFixController {
         try {
             StatusService.getInstance().updateStatus("Loading file: " + file.getName());
             String content;
-            if (file.getName().toLowerCase().endsWith(".docx")) {
+            if (isDocx(file)) {
                 content = docxReaderService.readText(file);
             } else {
                 content = Files.readString(file.toPath());
@@ -70,6 +93,7 @@ public class TypoFixController {
             taOriginal.setText(content);
             tfFile.setText(file.getAbsolutePath());
             this.currentFile = file;
+            this.loadedText = taOriginal.getText();
             StatusService.getInstance().updateStatus("File loaded: " + file.getName());
         } catch (IOException e) {
             StatusService.getInstance().updateStatus("Error loading file: " + e.getMessage());
@@ -79,53 +103,99 @@ public class TypoFixController {
 
     private void updatePreview() {
         String originalText = taOriginal.getText();
-        if (originalText == null || originalText.isEmpty()) {
-            taPreview.clear();
-            return;
+        if (originalText == null) {
+            originalText = "";
         }
 
-        String profile;
+        previewPipeline.submit(new PreviewRequest(originalText, selectedProfile()));
+    }
+
+    private String selectedProfile() {
         if (preferencesService.getAlwaysNormalize()) {
-            profile = preferencesService.getDefaultProfile();
+            String profile = preferencesService.getDefaultProfile();
             // Optionally, disable the choice box to make it clear why it's not being used
             cbProfile.setDisable(true);
             cbProfile.setValue(profile); // Visually reflect the profile being used
-        } else {
-            cbProfile.setDisable(false);
-            profile = cbProfile.getValue();
+            return profile;
         }
+        cbProfile.setDisable(false);
+        return cbProfile.getValue();
+    }
 
-        String fixedText = engineBridge.cleanText(originalText, profile);
-        taPreview.setText(fixedText);
+    /**
+     * Cleans the text for the preview; runs on the preview pipeline's worker thread, which owns
+     * the cleaning session.
+     */
+    private String cleanForPreview(PreviewRequest request) {
+        if (request.profile() == null || request.text().isEmpty()) {
+            return request.text();
+        }
+        if (previewSession == null || !request.profile().equals(previewProfile)) {
+            previewSession = engineBridge.openCleaningSession(request.profile());
+            previewProfile = request.profile();
+        }
+
+        // Only the paragraphs edited since the last update are cleaned again
+        return previewSession.update(request.text());
     }
 
+    private record PreviewRequest(String text, String profile) {}
+
     @FXML
     private void onApply() {
         if (currentFile == null) {
             Fx.error("Error", "No file loaded to save.");
             return;
         }
-        String previewText = taPreview.getText();
-        if (previewText == null || previewText.isEmpty()) {
+        // The preview is updated asynchronously and may still show an earlier text or file, so
+        // the text is cleaned again from the editor when it is saved
+        String originalText = taOriginal.getText();
+        if (originalText == null || originalText.isEmpty()) {
             Fx.alert("Info", "There is no fixed text to save.");
             return;
         }
+        File sourceFile = currentFile;
 
+        // A DOCX source can be fixed as DOCX, keeping its formatting
+        boolean docxSource = isDocx(sourceFile);
+        String baseName = sourceFile.getName().replaceFirst("[.][^.]+$", "");
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Save Fixed Text");
+        if (docxSource) {
+            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Word Document", "*.docx"));
+        }
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text File", "*.txt"));
-        fileChooser.setInitialFileName(currentFile.getName().replaceFirst("[.][^.]+$", "") + "_fixed.txt");
+        fileChooser.setInitialFileName(baseName + (docxSource ? "_fixed.docx" : "_fixed.txt"));
 
         File outputFile = fileChooser.showSaveDialog(tfFile.getScene().getWindow());
         if (outputFile == null) {
             return; // User cancelled
         }
+        boolean saveDocx = docxSource && isDocx(outputFile);
+        String profile = selectedProfile();
+        if (saveDocx && profile == null) {
+            Fx.error("Error", "Select a typography profile first.");
+            return;
+        }
+        if (saveDocx && !originalText.equals(loadedText)
+                && !ErrorHandlerUtil.showConfirmation("The text was edited after loading. A Word document is "
+                        + "fixed from the original file, so these edits will not be included.\n\n"
+                        + "Save anyway? Choose a text file instead to keep them.",
+                "Edits Not Saved", (Stage) tfFile.getScene().getWindow())) {
+            return;
+        }
 
         Task<Void> saveTask = new Task<>() {
             @Override
             protected Void call() throws Exception {
                 StatusService.getInstance().updateStatus("Saving file: " + outputFile.getName());
-                Files.writeString(outputFile.toPath(), previewText);
+                if (saveDocx) {
+                    // Fixed from the source document; edits made in the text area were confirmed above
+                    engineBridge.cleanDocx(sourceFile, outputFile, profile);
+                } else {
+                    String fixedText = profile == null ? originalText : engineBridge.cleanText(originalText, profile);
+                    Files.writeString(outputFile.toPath(), fixedText);
+                }
                 return null;
             }
         };
@@ -146,4 +216,8 @@ public class TypoFixController {
 
         new Thread(saveTask).start();
     }
+
+    private static boolean isDocx(File file) {
+        return file.getName().toLowerCase(Locale.ROOT).endsWith(".docx");
+    }
 }
@@ -1,13 +1,28 @@
 package org.manusmith.shell.dto;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * A comprehensive request object for the conversion process.
+ *
+ * @param transforms The DOCX transforms to apply, in order; empty to copy the document as is
  */
 public record ConvertRequest(
     File inputFile,
     File outputFile,
     AuthorMeta authorMeta,
-    FormattingPrefs formattingPrefs
-) {}
+    FormattingPrefs formattingPrefs,
+    List<DocxTransform> transforms
+) {
+    public ConvertRequest {
+        transforms = transforms == null ? List.of() : List.copyOf(transforms);
+    }
+
+    /**
+     * Creates a request with the transforms the formatting preferences ask for
+     */
+    public ConvertRequest(File inputFile, File outputFile, AuthorMeta authorMeta, FormattingPrefs formattingPrefs) {
+        this(inputFile, outputFile, authorMeta, formattingPrefs, DocxTransform.fromPrefs(formattingPrefs));
+    }
+}
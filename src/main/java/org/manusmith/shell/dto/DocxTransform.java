@@ -0,0 +1,36 @@
+package org.manusmith.shell.dto;
+
+import java.util.List;
+
+/**
+ * One step of the DOCX transform pipeline. The steps of a request run in order over a single
+ * read of each document part.
+ */
+public sealed interface DocxTransform {
+
+    /**
+     * Turns italic runs into underlined ones
+     */
+    record ItalicToUnderline() implements DocxTransform {}
+
+    /**
+     * Fixes quotes, dashes, ellipses and spacing with a typography profile
+     */
+    record Typography(String profile) implements DocxTransform {}
+
+    /**
+     * Lays the document out in standard manuscript (Shunn) format: 12pt type, double spacing, a
+     * contact block on the first page, a running header and {@code #} scene breaks
+     */
+    record ShunnFormat(AuthorMeta authorMeta, ManuscriptFont font) implements DocxTransform {}
+
+    /**
+     * Returns the transforms the given preferences ask for
+     */
+    static List<DocxTransform> fromPrefs(FormattingPrefs formattingPrefs) {
+        if (formattingPrefs == null || !formattingPrefs.italicToUnderline()) {
+            return List.of();
+        }
+        return List.of(new ItalicToUnderline());
+    }
+}
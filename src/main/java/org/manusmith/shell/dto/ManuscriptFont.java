@@ -0,0 +1,24 @@
+package org.manusmith.shell.dto;
+
+/**
+ * The typefaces standard manuscript format allows.
+ */
+public enum ManuscriptFont {
+    COURIER("Courier New"),
+    TIMES("Times New Roman");
+
+    private final String fontName;
+
+    ManuscriptFont(String fontName) {
+        this.fontName = fontName;
+    }
+
+    public String getFontName() {
+        return fontName;
+    }
+
+    @Override
+    public String toString() {
+        return fontName;
+    }
+}
@@ -0,0 +1,50 @@
+package org.manusmith.shell.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the heap a conversion allocates on the calling thread.
+ * <p>
+ * Unlike the heap in use, the bytes a thread allocates are not shared with conversions running
+ * at the same time and do not depend on when the garbage collector runs. Story parts transformed
+ * on the part executor are not included, so in that mode the count is a lower bound.
+ */
+final class AllocationCounter {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final long startBytes;
+
+    private AllocationCounter(long startBytes) {
+        this.startBytes = startBytes;
+    }
+
+    static AllocationCounter start() {
+        return new AllocationCounter(currentThreadAllocatedBytes());
+    }
+
+    /**
+     * Returns the bytes allocated by this thread since the measurement started, or -1 if the JVM
+     * does not count allocations
+     */
+    long getAllocatedBytes() {
+        long current = currentThreadAllocatedBytes();
+        return current < 0 || startBytes < 0 ? -1 : current - startBytes;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        return THREADS != null && THREADS.isThreadAllocatedMemoryEnabled()
+                ? THREADS.getCurrentThreadAllocatedBytes()
+                : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean allocationCounting
+                && allocationCounting.isThreadAllocatedMemorySupported()) {
+            return allocationCounting;
+        }
+        return null;
+    }
+}
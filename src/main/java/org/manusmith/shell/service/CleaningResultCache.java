@@ -0,0 +1,124 @@
+package org.manusmith.shell.service;
+
+import io.micrometer.core.instrument.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Size-bounded LRU cache of {@link EngineBridge#cleanText(String, String)} results.
+ * <p>
+ * The clipboard monitor, the TypoFix preview and repeated batch runs often clean the same text
+ * with the same profile. Entries are keyed by a 64-bit hash of the text together with the profile
+ * and hold both the source and the result, so a hit is confirmed by comparing the source text.
+ * The total number of characters held (sources and results) never exceeds the configured
+ * maximum; the least recently used entries are evicted first.
+ */
+public class CleaningResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(CleaningResultCache.class);
+
+    static CleaningResultCache instance; // package-private for testing
+
+    private final MetricsService metricsService;
+    private final long maxChars;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalChars;
+
+    CleaningResultCache(long maxChars, MetricsService metricsService) {
+        this.maxChars = maxChars;
+        this.metricsService = metricsService;
+    }
+
+    public static synchronized CleaningResultCache getInstance() {
+        if (instance == null) {
+            long maxChars = ConfigurationService.getInstance().getPerformanceConfig().getCleaningCacheMaxChars();
+            instance = new CleaningResultCache(maxChars, MetricsService.getInstance());
+            Gauge.builder("text.cleaning.cache.size", instance, CleaningResultCache::getTotalChars)
+                    .description("Characters held by the text cleaning result cache")
+                    .register(instance.metricsService.getMeterRegistry());
+            logger.info("Text cleaning cache initialized with a limit of {} chars", maxChars);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached result of cleaning {@code text} with {@code profile}, or null
+     */
+    public String get(String text, String profile) {
+        if (maxChars <= 0) {
+            return null;
+        }
+        Key key = new Key(hash(text), profile);
+        String result;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            result = entry != null && entry.source.equals(text) ? entry.result : null;
+        }
+        metricsService.recordCounter(result != null ? "text.cleaning.cache.hit" : "text.cleaning.cache.miss",
+                "profile", profile);
+        return result;
+    }
+
+    /**
+     * Stores a cleaning result. Results too large to share the cache with others are not stored.
+     */
+    public void put(String text, String profile, String result) {
+        long size = (long) text.length() + result.length();
+        if (size > maxChars / 2) {
+            return;
+        }
+        Key key = new Key(hash(text), profile);
+        int evicted = 0;
+        synchronized (this) {
+            Entry previous = entries.put(key, new Entry(text, result));
+            if (previous != null) {
+                totalChars -= previous.size();
+            }
+            totalChars += size;
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (totalChars > maxChars) {
+                totalChars -= eldest.next().size();
+                eldest.remove();
+                evicted++;
+            }
+        }
+        for (int i = 0; i < evicted; i++) {
+            metricsService.recordCounter("text.cleaning.cache.eviction");
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalChars = 0;
+    }
+
+    public synchronized long getTotalChars() {
+        return totalChars;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the text
+     */
+    static long hash(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private record Key(long hash, String profile) {}
+
+    private record Entry(String source, String result) {
+        long size() {
+            return (long) source.length() + result.length();
+        }
+    }
+}
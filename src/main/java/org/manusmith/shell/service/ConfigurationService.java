@@ -216,6 +216,7 @@ public class ConfigurationService {
         ApplicationConfig.ProcessingConfig processingConfig = new ApplicationConfig.ProcessingConfig();
         processingConfig.setTempDirectory(System.getProperty("java.io.tmpdir") + "/manusmith-shell");
         processingConfig.setMaxFileSizeMB(50);
+        processingConfig.setLargeDocumentThresholdMB(20);
         
         ApplicationConfig.ProcessingConfig.BackupConfig backupConfig = new ApplicationConfig.ProcessingConfig.BackupConfig();
         backupConfig.setEnabled(true);
@@ -230,6 +231,10 @@ public class ConfigurationService {
         performanceConfig.setAsyncProcessing(true);
         performanceConfig.setThreadPoolSize(4);
         performanceConfig.setMaxConcurrentOperations(2);
+        performanceConfig.setParallelCleaningThresholdChars(1_000_000);
+        performanceConfig.setPreviewDebounceMillis(150);
+        performanceConfig.setCleaningCacheMaxChars(8_000_000);
+        performanceConfig.setParallelPartTransforms(true);
         defaultConfig.setPerformance(performanceConfig);
         
         // Metrics config
@@ -0,0 +1,181 @@
+package org.manusmith.shell.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The {@link DocumentConverter}s available, keyed by source and target format.
+ * <p>
+ * Every route between two formats is resolved once when the registry is built, taking the fewest
+ * conversions and, between converters for the same formats, the one with the highest priority.
+ * Finding the route for a conversion is then a single map lookup. Formats without a direct
+ * converter are converted through intermediate formats, for example odt to txt to docx.
+ */
+public class ConverterRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ConverterRegistry.class);
+
+    static ConverterRegistry instance; // package-private for testing
+
+    private final Map<String, Map<String, DocumentConverter>> converters = new LinkedHashMap<>();
+    private final Map<String, Map<String, Route>> routes = new HashMap<>();
+
+    ConverterRegistry(Iterable<? extends DocumentConverter> available) {
+        for (DocumentConverter converter : available) {
+            converters.computeIfAbsent(converter.getSourceFormat(), format -> new LinkedHashMap<>())
+                    .merge(converter.getTargetFormat(), converter,
+                            (current, added) -> added.getPriority() > current.getPriority() ? added : current);
+        }
+        for (String source : converters.keySet()) {
+            routes.put(source, resolveRoutes(source));
+        }
+    }
+
+    public static synchronized ConverterRegistry getInstance() {
+        if (instance == null) {
+            instance = new ConverterRegistry(ServiceLoader.load(DocumentConverter.class));
+            logger.info("Converter registry initialized with routes: {}", instance.routes.values().stream()
+                    .flatMap(targets -> targets.values().stream())
+                    .map(Route::toString)
+                    .toList());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the lower-case extension of a file, which names its format, or an empty string
+     */
+    public static String formatOf(File file) {
+        String name = file.getName();
+        int lastDotIndex = name.lastIndexOf('.');
+        return lastDotIndex > 0 ? name.substring(lastDotIndex + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Returns the route from one format to another, or null if there is none
+     */
+    public Route findRoute(String sourceFormat, String targetFormat) {
+        return routes.getOrDefault(sourceFormat, Map.of()).get(targetFormat);
+    }
+
+    /**
+     * Returns the formats that can be converted to something
+     */
+    public Set<String> getSourceFormats() {
+        return Collections.unmodifiableSet(converters.keySet());
+    }
+
+    /**
+     * Returns the format a file is converted to when no target is chosen: the target of the first
+     * converter registered for its format, or null if it cannot be converted
+     */
+    public String getDefaultTarget(String sourceFormat) {
+        Map<String, DocumentConverter> targets = converters.get(sourceFormat);
+        return targets == null || targets.isEmpty() ? null : targets.keySet().iterator().next();
+    }
+
+    // Breadth-first, so every route found takes the fewest conversions
+    private Map<String, Route> resolveRoutes(String source) {
+        Map<String, Route> found = new LinkedHashMap<>();
+        Deque<Route> queue = new ArrayDeque<>();
+        queue.add(new Route(List.of()));
+        while (!queue.isEmpty()) {
+            Route route = queue.poll();
+            String format = route.steps().isEmpty() ? source : route.getTargetFormat();
+            for (DocumentConverter converter : converters.getOrDefault(format, Map.of()).values()) {
+                String target = converter.getTargetFormat();
+                if (!target.equals(source) && !found.containsKey(target)) {
+                    List<DocumentConverter> steps = new ArrayList<>(route.steps());
+                    steps.add(converter);
+                    Route next = new Route(List.copyOf(steps));
+                    found.put(target, next);
+                    queue.add(next);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * A chain of converters from one format to another
+     */
+    public record Route(List<DocumentConverter> steps) {
+
+        public String getSourceFormat() {
+            return steps.get(0).getSourceFormat();
+        }
+
+        public String getTargetFormat() {
+            return steps.get(steps.size() - 1).getTargetFormat();
+        }
+
+        /**
+         * Whether every step writes its output while reading its input
+         */
+        public boolean isStreaming() {
+            return steps.stream().allMatch(DocumentConverter::isStreaming);
+        }
+
+        /**
+         * The memory use of the most demanding step
+         */
+        public DocumentConverter.MemoryUse getMemoryUse() {
+            return steps.stream()
+                    .map(DocumentConverter::getMemoryUse)
+                    .max(Enum::compareTo)
+                    .orElse(DocumentConverter.MemoryUse.CONSTANT);
+        }
+
+        /**
+         * Runs the conversions in turn, passing intermediate results through temp files
+         *
+         * @param tempDirectory Directory for the intermediate files, or null for the system default
+         */
+        public void convert(File inputFile, File outputFile, Path tempDirectory) throws IOException {
+            File input = inputFile;
+            List<Path> intermediates = new ArrayList<>();
+            try {
+                for (int i = 0; i < steps.size(); i++) {
+                    DocumentConverter step = steps.get(i);
+                    File output = outputFile;
+                    if (i < steps.size() - 1) {
+                        Path intermediate = tempDirectory != null
+                                ? Files.createTempFile(tempDirectory, "manusmith-", "." + step.getTargetFormat())
+                                : Files.createTempFile("manusmith-", "." + step.getTargetFormat());
+                        intermediates.add(intermediate);
+                        output = intermediate.toFile();
+                    }
+                    step.convert(input, output);
+                    input = output;
+                }
+            } finally {
+                for (Path intermediate : intermediates) {
+                    Files.deleteIfExists(intermediate);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return getSourceFormat() + "->" + steps.stream()
+                    .map(DocumentConverter::getTargetFormat)
+                    .collect(Collectors.joining("->"));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.manusmith.shell.service;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Converts a document from one format to another.
+ * <p>
+ * Converters are listed in {@code META-INF/services/org.manusmith.shell.service.DocumentConverter}
+ * and discovered by the {@link ConverterRegistry}, so a converter on the classpath is picked up
+ * without changes to the bridge or the controllers. Implementations need a public no-argument
+ * constructor and must be safe to use from several threads.
+ */
+public interface DocumentConverter {
+
+    /**
+     * How the memory a conversion needs grows with the document
+     */
+    enum MemoryUse {
+        /** Fixed-size buffers, whatever the size of the document */
+        CONSTANT,
+        /** The whole document, or its text, is held in memory */
+        DOCUMENT
+    }
+
+    /**
+     * The format read, as a lower-case file extension such as {@code docx}
+     */
+    String getSourceFormat();
+
+    /**
+     * The format written, as a lower-case file extension such as {@code txt}
+     */
+    String getTargetFormat();
+
+    /**
+     * Whether the output is written while the input is read
+     */
+    boolean isStreaming();
+
+    MemoryUse getMemoryUse();
+
+    /**
+     * Decides between converters for the same formats; the highest priority wins
+     */
+    default int getPriority() {
+        return 0;
+    }
+
+    void convert(File inputFile, File outputFile) throws IOException;
+}
@@ -1,87 +1,198 @@
 package org.manusmith.shell.service;
 
-import org.apache.poi.xwpf.usermodel.*;
 import org.manusmith.shell.dto.ConvertRequest;
+import org.manusmith.shell.dto.DocxTransform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class DocxProcessingService {
+    private static final Logger logger = LoggerFactory.getLogger(DocxProcessingService.class);
 
-    public void processDocument(ConvertRequest request) throws IOException {
-        try (FileInputStream fis = new FileInputStream(request.inputFile());
-             XWPFDocument document = new XWPFDocument(fis)) {
+    private static final String WORDML_TYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.";
 
-            if (request.formattingPrefs() != null && request.formattingPrefs().italicToUnderline()) {
-                System.out.println("Applying italic-to-underline conversion...");
-                convertItalicToUnderline(document);
-            }
+    static final Set<String> MAIN_CONTENT_TYPES = Set.of(
+            WORDML_TYPE + "document.main+xml",
+            WORDML_TYPE + "template.main+xml",
+            "application/vnd.ms-word.document.macroEnabled.main+xml",
+            "application/vnd.ms-word.template.macroEnabledTemplate.main+xml");
+
+    // Parts with runs of manuscript text; tables and text boxes live inside these
+    static final Set<String> STORY_CONTENT_TYPES = Stream.concat(MAIN_CONTENT_TYPES.stream(), Stream.of(
+            WORDML_TYPE + "header+xml",
+            WORDML_TYPE + "footer+xml",
+            WORDML_TYPE + "footnotes+xml",
+            WORDML_TYPE + "endnotes+xml",
+            WORDML_TYPE + "comments+xml")).collect(Collectors.toUnmodifiableSet());
+
+    private final Executor partExecutor;
+    private final long largeDocumentThresholdBytes;
+    private final Path spillDirectory;
+
+    public DocxProcessingService() {
+        this(null);
+    }
+
+    /**
+     * @param partExecutor Transforms the story parts of a document concurrently, or null to
+     *                     transform them one after another
+     */
+    public DocxProcessingService(Executor partExecutor) {
+        this(partExecutor, Long.MAX_VALUE, null);
+    }
 
-            try (FileOutputStream fos = new FileOutputStream(request.outputFile())) {
-                document.write(fos);
+    /**
+     * @param partExecutor Transforms the story parts of a document concurrently, or null to
+     *                     transform them one after another
+     * @param largeDocumentThresholdBytes Documents at least this big are processed in large-document
+     *                                    mode, buffering rewritten parts in {@code spillDirectory}
+     * @param spillDirectory Directory for the temp files of large-document mode, or null to
+     *                       never use that mode
+     */
+    public DocxProcessingService(Executor partExecutor, long largeDocumentThresholdBytes, Path spillDirectory) {
+        this.partExecutor = partExecutor;
+        this.largeDocumentThresholdBytes = largeDocumentThresholdBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Returns whether a document is big enough to be processed in large-document mode
+     */
+    public boolean isLargeDocument(File inputFile) {
+        return spillDirectory != null && inputFile.length() >= largeDocumentThresholdBytes;
+    }
+
+    /**
+     * Applies the transforms of the request in one pass over the story parts, or copies the
+     * document if there are none. Input that is not a DOCX document is rejected either way.
+     *
+     * @return Nanoseconds spent parsing, in each transform and serializing, in pipeline order
+     */
+    public Map<String, Long> processDocument(ConvertRequest request) throws IOException {
+        if (request.transforms().isEmpty()) {
+            // Other formats would otherwise be copied unchanged under a .docx name
+            try (OoxmlPackage docx = new OoxmlPackage(request.inputFile())) {
+                if (docx.getPartsOfType(MAIN_CONTENT_TYPES).isEmpty()) {
+                    throw new IOException("Not a DOCX document: " + request.inputFile().getName());
+                }
             }
+            Files.copy(request.inputFile().toPath(), request.outputFile().toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            return Map.of();
         }
+
+        List<EventTransformer> transforms = new ArrayList<>();
+        for (DocxTransform transform : request.transforms()) {
+            transforms.add(toTransformer(transform));
+        }
+        logger.info("Applying transforms: {}", transforms.stream().map(EventTransformer::getName).toList());
+
+        // The manuscript formatter lays out the body, so it only runs over the main part
+        ShunnFormatter shunnFormatter = transforms.stream()
+                .filter(ShunnFormatter.class::isInstance)
+                .map(ShunnFormatter.class::cast)
+                .findFirst()
+                .orElse(null);
+        TransformPipeline main = new TransformPipeline(transforms);
+        TransformPipeline stories = new TransformPipeline(transforms.stream()
+                .filter(transform -> !(transform instanceof ShunnFormatter))
+                .toList());
+        transformStories(request.inputFile(), request.outputFile(), main, stories, shunnFormatter);
+
+        Map<String, Long> timings = new LinkedHashMap<>(main.getTimings());
+        stories.getTimings().forEach((stage, nanos) -> timings.merge(stage, nanos, Long::sum));
+        return timings;
     }
 
-    private void convertItalicToUnderline(XWPFDocument document) {
-        for (XWPFParagraph p : document.getParagraphs()) {
-            // This is tricky because we can't modify the list of runs while iterating.
-            // A common approach is to get the runs, and then work with indexes.
-            for (int i = p.getRuns().size() - 1; i >= 0; i--) {
-                XWPFRun run = p.getRuns().get(i);
-                if (run.isItalic()) {
-                    String text = run.getText(0);
-                    if (text == null || text.isEmpty()) {
-                        continue;
-                    }
-
-                    // Copy properties BEFORE removing the run to avoid XML disconnect
-                    String fontFamily = null;
-                    try {
-                        fontFamily = run.getFontFamily();
-                    } catch (Exception e) {
-                        // Ignore if font family can't be retrieved
-                    }
-                    
-                    int fontSize = -1;
-                    try {
-                        // Use getFontSizeAsDouble() for the newer API
-                        Double fontSizeDouble = run.getFontSizeAsDouble();
-                        if (fontSizeDouble != null) {
-                            fontSize = fontSizeDouble.intValue();
-                        }
-                    } catch (Exception e) {
-                        // Ignore if font size can't be retrieved
-                    }
-                    
-                    boolean isBold = false;
-                    try {
-                        isBold = run.isBold();
-                    } catch (Exception e) {
-                        // Ignore if bold status can't be retrieved
-                    }
-
-                    // Remove the old run
-                    p.removeRun(i);
-
-                    // Create a new run with the same text and properties, but underlined
-                    XWPFRun newRun = p.insertNewRun(i);
-                    newRun.setText(text);
-                    newRun.setUnderline(UnderlinePatterns.SINGLE);
-
-                    // Copy other properties
-                    if (fontFamily != null) {
-                        newRun.setFontFamily(fontFamily);
-                    }
-                    if (fontSize != -1) {
-                       newRun.setFontSize(fontSize);
-                    }
-                    newRun.setBold(isBold);
-                    // Not setting italic, as we are replacing it.
-                }
+    /**
+     * Fixes the typography of every story part in place, keeping all run formatting
+     *
+     * @return Nanoseconds spent parsing, cleaning and serializing
+     */
+    public Map<String, Long> cleanTypography(File inputFile, File outputFile, TypographyEngine engine,
+                                             TypographyEngine.RuleStats stats) throws IOException {
+        TransformPipeline pipeline = new TransformPipeline(List.of(new TypographyTransformer(engine, stats)));
+        transformStories(inputFile, outputFile, pipeline, pipeline, null);
+        return pipeline.getTimings();
+    }
+
+    private static EventTransformer toTransformer(DocxTransform transform) throws IOException {
+        if (transform instanceof DocxTransform.ShunnFormat shunnFormat) {
+            return new ShunnFormatter(shunnFormat.authorMeta(), shunnFormat.font());
+        }
+        if (transform instanceof DocxTransform.Typography typography) {
+            return new TypographyTransformer(TypographyEngine.forProfile(typography.profile()),
+                    new TypographyEngine.RuleStats());
+        }
+        if (transform instanceof DocxTransform.ItalicToUnderline) {
+            return new ItalicToUnderlineTransformer();
+        }
+        throw new IllegalArgumentException("Unsupported transform: " + transform);
+    }
+
+    /**
+     * Rewrites the main part with one pipeline and the other story parts with another
+     *
+     * @param shunnFormatter Adds its styles and header parts to the package, or null
+     */
+    private void transformStories(File inputFile, File outputFile, TransformPipeline main, TransformPipeline stories,
+                                  ShunnFormatter shunnFormatter) throws IOException {
+        // The input is read while the output is written, so overwriting it goes through a temp file
+        Path target = outputFile.toPath();
+        boolean inPlace = Files.exists(target) && Files.isSameFile(inputFile.toPath(), target);
+        File destination = inPlace
+                ? Files.createTempFile(target.toAbsolutePath().getParent(), ".manusmith", ".docx").toFile()
+                : outputFile;
+
+        // Story parts are rewritten as streams and every other part is copied without being
+        // decompressed, so memory use does not grow with the manuscript or its images. Large
+        // documents also keep the parts rewritten concurrently on disk until they are written.
+        Path spill = null;
+        if (isLargeDocument(inputFile)) {
+            spill = Files.createDirectories(spillDirectory);
+            logger.info("Processing {} ({} bytes) in large-document mode, spilling to {}",
+                    inputFile.getName(), inputFile.length(), spill);
+        }
+        try (OoxmlPackage docx = new OoxmlPackage(inputFile, spill)) {
+            List<String> mainParts = docx.getPartsOfType(MAIN_CONTENT_TYPES);
+            if (mainParts.isEmpty()) {
+                throw new IOException("Not a DOCX document: " + inputFile.getName());
             }
+            String mainPart = mainParts.get(0);
+            Map<String, OoxmlPackage.PartTransformer> edits = new HashMap<>();
+            Map<String, byte[]> additions = new LinkedHashMap<>();
+            if (shunnFormatter != null) {
+                shunnFormatter.prepare(docx, mainPart, edits, additions);
+            }
+            Set<String> storyParts = Set.copyOf(docx.getPartsOfType(STORY_CONTENT_TYPES));
+            OoxmlPackage.PartTransformer storyTransformer = stories.getTransforms().isEmpty() ? null : stories;
+            logger.debug("Transforming {}, editing {}, adding {}", storyParts, edits.keySet(), additions.keySet());
+            docx.writeTo(destination, part -> part.equals(mainPart) ? main
+                    : edits.containsKey(part) ? edits.get(part)
+                    : storyParts.contains(part) ? storyTransformer
+                    : null, additions, partExecutor);
+        } catch (IOException | RuntimeException e) {
+            if (inPlace) {
+                Files.deleteIfExists(destination.toPath());
+            }
+            throw e;
+        }
+        if (inPlace) {
+            Files.move(destination.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 }
@@ -1,23 +1,20 @@
 package org.manusmith.shell.service;
 
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.StringWriter;
 
 public class DocxReaderService {
 
+    private final DocxTextExtractor extractor = new DocxTextExtractor();
+
     public String readText(File docxFile) throws IOException {
         if (docxFile == null || !docxFile.exists()) {
             throw new IOException("File does not exist: " + docxFile);
         }
 
-        try (FileInputStream fis = new FileInputStream(docxFile);
-             XWPFDocument document = new XWPFDocument(fis);
-             XWPFWordExtractor extractor = new XWPFWordExtractor(document)) {
-            return extractor.getText();
-        }
+        StringWriter text = new StringWriter();
+        extractor.extractText(docxFile, text);
+        return text.toString();
     }
 }
@@ -0,0 +1,93 @@
+package org.manusmith.shell.service;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Extracts the text of a DOCX document without building a document model.
+ * <p>
+ * The main part is read with a StAX cursor and the parser's own character buffers are written
+ * straight to the writer, so memory use stays flat however long the manuscript is. Text split
+ * across runs and text elements is joined, {@code w:tab} becomes a tab, {@code w:br} and
+ * {@code w:cr} a line break and every paragraph ends with a line break. The cells of a table row
+ * are separated by tabs. Deleted text and field codes are left out, as is the fallback copy Word
+ * keeps of each text box.
+ */
+public class DocxTextExtractor {
+
+    static final String MARKUP_COMPATIBILITY_NS =
+            "http://schemas.openxmlformats.org/markup-compatibility/2006";
+
+    /**
+     * Writes the text of the main part of a DOCX file; the writer is not closed
+     *
+     * @return The number of characters written
+     */
+    public long extractText(File docxFile, Writer writer) throws IOException {
+        try (OoxmlPackage docx = new OoxmlPackage(docxFile)) {
+            List<String> mainParts = docx.getPartsOfType(DocxProcessingService.MAIN_CONTENT_TYPES);
+            if (mainParts.isEmpty()) {
+                throw new IOException("Not a DOCX document: " + docxFile.getName());
+            }
+            try (InputStream in = docx.getInputStream(mainParts.get(0))) {
+                return extractText(XmlPartWriter.newStreamReader(in), writer);
+            } catch (XMLStreamException e) {
+                throw new IOException("Invalid document part in " + docxFile.getName() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static long extractText(XMLStreamReader reader, Writer writer) throws XMLStreamException, IOException {
+        TextOutput out = new TextOutput(writer);
+        boolean inText = false;
+        int fallbackDepth = 0;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    String namespace = reader.getNamespaceURI();
+                    if (MARKUP_COMPATIBILITY_NS.equals(namespace) && "Fallback".equals(reader.getLocalName())) {
+                        fallbackDepth++;
+                    } else if (fallbackDepth == 0 && RunProperties.WORDML_NS.equals(namespace)) {
+                        switch (reader.getLocalName()) {
+                            case "t" -> inText = true;
+                            case "tab", "ptab" -> out.write('\t');
+                            case "br", "cr" -> out.write('\n');
+                            case "noBreakHyphen" -> out.write('\u2011');
+                            default -> { }
+                        }
+                    }
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    String namespace = reader.getNamespaceURI();
+                    if (MARKUP_COMPATIBILITY_NS.equals(namespace) && "Fallback".equals(reader.getLocalName())) {
+                        fallbackDepth--;
+                    } else if (fallbackDepth == 0 && RunProperties.WORDML_NS.equals(namespace)) {
+                        switch (reader.getLocalName()) {
+                            case "t" -> inText = false;
+                            case "p" -> out.separate('\n');
+                            // The break after the last paragraph of a cell separates it from the next cell
+                            case "tc" -> out.replaceSeparator('\t');
+                            case "tr" -> out.replaceSeparator('\n');
+                            default -> { }
+                        }
+                    }
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+                    if (inText && fallbackDepth == 0) {
+                        out.write(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                }
+                default -> { }
+            }
+        }
+        reader.close();
+        out.separate((char) 0);
+        return out.getWritten();
+    }
+}
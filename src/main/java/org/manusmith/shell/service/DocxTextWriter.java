@@ -0,0 +1,209 @@
+package org.manusmith.shell.service;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes plain text as a DOCX document without building a document model.
+ * <p>
+ * The package parts are written straight into the zip: the content types, relationships and
+ * styles are fixed, and {@code word/document.xml} is written while the text is read, one
+ * paragraph per line. Memory use is a few buffers however long the text is. Tabs become
+ * {@code w:tab}, form feeds page breaks, and spaces are preserved. Characters XML does not allow,
+ * such as most control characters, are left out.
+ */
+public class DocxTextWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\r\n";
+
+    private static final String CONTENT_TYPES = XML_DECLARATION
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/word/document.xml\" ContentType=\""
+            + "application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/>"
+            + "<Override PartName=\"/word/styles.xml\" ContentType=\""
+            + "application/vnd.openxmlformats-officedocument.wordprocessingml.styles+xml\"/>"
+            + "</Types>";
+
+    private static final String PACKAGE_RELATIONSHIPS = XML_DECLARATION
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/"
+            + "relationships/officeDocument\" Target=\"word/document.xml\"/>"
+            + "</Relationships>";
+
+    private static final String DOCUMENT_RELATIONSHIPS = XML_DECLARATION
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/"
+            + "relationships/styles\" Target=\"styles.xml\"/>"
+            + "</Relationships>";
+
+    private static final String STYLES = XML_DECLARATION
+            + "<w:styles xmlns:w=\"" + RunProperties.WORDML_NS + "\">"
+            + "<w:docDefaults><w:rPrDefault><w:rPr>"
+            + "<w:rFonts w:ascii=\"Times New Roman\" w:eastAsia=\"Times New Roman\" w:hAnsi=\"Times New Roman\""
+            + " w:cs=\"Times New Roman\"/><w:sz w:val=\"24\"/><w:szCs w:val=\"24\"/>"
+            + "</w:rPr></w:rPrDefault><w:pPrDefault/></w:docDefaults>"
+            + "<w:style w:type=\"paragraph\" w:default=\"1\" w:styleId=\"Normal\"><w:name w:val=\"Normal\"/>"
+            + "<w:qFormat/></w:style>"
+            + "</w:styles>";
+
+    private static final String DOCUMENT_START = XML_DECLARATION
+            + "<w:document xmlns:w=\"" + RunProperties.WORDML_NS + "\"><w:body>";
+
+    private static final String DOCUMENT_END = "</w:body></w:document>";
+
+    /**
+     * Writes the text of a reader as a DOCX file; the reader is not closed
+     *
+     * @return The number of paragraphs written
+     */
+    public long writeText(Reader reader, File docxFile) throws IOException {
+        try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(docxFile)) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), BUFFER_SIZE);
+            writePart(zip, writer, OoxmlPackage.CONTENT_TYPES_PART, CONTENT_TYPES);
+            writePart(zip, writer, "_rels/.rels", PACKAGE_RELATIONSHIPS);
+            writePart(zip, writer, "word/_rels/document.xml.rels", DOCUMENT_RELATIONSHIPS);
+            writePart(zip, writer, "word/styles.xml", STYLES);
+
+            zip.putArchiveEntry(new ZipArchiveEntry("word/document.xml"));
+            writer.write(DOCUMENT_START);
+            long paragraphs = new DocumentBody(writer).write(reader);
+            writer.write(DOCUMENT_END);
+            writer.flush();
+            zip.closeArchiveEntry();
+            return paragraphs;
+        }
+    }
+
+    private static void writePart(ZipArchiveOutputStream zip, Writer writer, String name, String content)
+            throws IOException {
+        zip.putArchiveEntry(new ZipArchiveEntry(name));
+        writer.write(content);
+        writer.flush();
+        zip.closeArchiveEntry();
+    }
+
+    /**
+     * Writes the paragraphs of the body, tracking whether a paragraph and a text element are open
+     */
+    private static final class DocumentBody {
+        private final Writer writer;
+        private boolean inParagraph;
+        private boolean inText;
+        private char highSurrogate;
+        private long paragraphs;
+
+        DocumentBody(Writer writer) {
+            this.writer = writer;
+        }
+
+        long write(Reader reader) throws IOException {
+            char[] buffer = new char[BUFFER_SIZE];
+            boolean afterCarriageReturn = false;
+            for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+                for (int i = 0; i < read; i++) {
+                    char c = buffer[i];
+                    // A line ends at \n, \r or \r\n, as for BufferedReader.readLine
+                    if (c == '\n' && afterCarriageReturn) {
+                        afterCarriageReturn = false;
+                        continue;
+                    }
+                    afterCarriageReturn = c == '\r';
+                    switch (c) {
+                        case '\n', '\r' -> endParagraph();
+                        case '\t' -> element("<w:tab/>");
+                        case '\f' -> element("<w:br w:type=\"page\"/>");
+                        case '&' -> text("&amp;");
+                        case '<' -> text("&lt;");
+                        case '>' -> text("&gt;");
+                        default -> character(c);
+                    }
+                }
+            }
+            // The last line counts even without a line break, and the body needs a paragraph
+            if (inParagraph || paragraphs == 0) {
+                endParagraph();
+            }
+            return paragraphs;
+        }
+
+        private void character(char c) throws IOException {
+            if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+                return;
+            }
+            if (Character.isLowSurrogate(c)) {
+                if (highSurrogate != 0) {
+                    startText();
+                    writer.write(highSurrogate);
+                    writer.write(c);
+                }
+                highSurrogate = 0;
+                return;
+            }
+            highSurrogate = 0;
+            if (c >= 0x20 && c != 0xFFFE && c != 0xFFFF) {
+                startText();
+                writer.write(c);
+            }
+        }
+
+        private void text(String escaped) throws IOException {
+            highSurrogate = 0;
+            startText();
+            writer.write(escaped);
+        }
+
+        private void element(String element) throws IOException {
+            highSurrogate = 0;
+            startParagraph();
+            endText();
+            writer.write(element);
+        }
+
+        private void startParagraph() throws IOException {
+            if (!inParagraph) {
+                writer.write("<w:p><w:r>");
+                inParagraph = true;
+            }
+        }
+
+        private void startText() throws IOException {
+            startParagraph();
+            if (!inText) {
+                writer.write("<w:t xml:space=\"preserve\">");
+                inText = true;
+            }
+        }
+
+        private void endText() throws IOException {
+            if (inText) {
+                writer.write("</w:t>");
+                inText = false;
+            }
+        }
+
+        private void endParagraph() throws IOException {
+            highSurrogate = 0;
+            if (inParagraph) {
+                endText();
+                writer.write("</w:r></w:p>");
+                inParagraph = false;
+            } else {
+                writer.write("<w:p/>");
+            }
+            paragraphs++;
+        }
+    }
+}
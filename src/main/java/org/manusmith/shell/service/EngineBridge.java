@@ -1,22 +1,23 @@
 package org.manusmith.shell.service;
 
-import com.vladsch.flexmark.parser.Parser;
-import com.vladsch.flexmark.util.ast.Node;
-import com.vladsch.flexmark.util.data.MutableDataSet;
 import io.micrometer.core.instrument.Timer;
 import org.manusmith.shell.dto.ConvertRequest;
-import org.odftoolkit.odfdom.doc.OdfTextDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Enterprise-grade document processing bridge with monitoring, logging, and async capabilities.
@@ -30,12 +31,20 @@ public class EngineBridge {
     private final ConfigurationService configurationService;
     private final ExecutorService executorService;
     private final SecurityService securityService;
+    private final CleaningResultCache cleaningCache;
+    private final ConverterRegistry converterRegistry;
     
     public EngineBridge() {
-        this.docxProcessingService = new DocxProcessingService();
         this.metricsService = MetricsService.getInstance();
         this.configurationService = ConfigurationService.getInstance();
+        String tempDirectory = configurationService.getProcessingConfig().getTempDirectory();
+        this.docxProcessingService = new DocxProcessingService(
+                configurationService.getPerformanceConfig().isParallelPartTransforms() ? ForkJoinPool.commonPool() : null,
+                configurationService.getProcessingConfig().getLargeDocumentThresholdMB() * 1024 * 1024L,
+                tempDirectory == null || tempDirectory.isEmpty() ? null : Path.of(tempDirectory));
         this.securityService = new SecurityService();
+        this.cleaningCache = CleaningResultCache.getInstance();
+        this.converterRegistry = ConverterRegistry.getInstance();
         
         int threadPoolSize = configurationService.getPerformanceConfig().getThreadPoolSize();
         this.executorService = Executors.newFixedThreadPool(threadPoolSize);
@@ -62,18 +71,20 @@ public class EngineBridge {
         Timer.Sample sample = metricsService.startTimer();
         
         Instant startTime = Instant.now();
+        AllocationCounter allocation = AllocationCounter.start();
         String documentType = getFileExtension(request.inputFile().getName());
         
         try {
             logger.info("Starting document processing: {} -> {}", 
                     request.inputFile().getName(), request.outputFile().getName());
             
-            docxProcessingService.processDocument(request);
+            recordTransformTimings(docxProcessingService.processDocument(request));
             
             Duration processingTime = Duration.between(startTime, Instant.now());
             long fileSize = request.inputFile().length();
             
             metricsService.recordDocumentProcessed(documentType, fileSize, processingTime);
+            recordAllocation(documentType, allocation);
             logger.info("Document processing completed successfully in {}ms", processingTime.toMillis());
             
         } catch (Exception e) {
@@ -143,45 +154,38 @@ public class EngineBridge {
             return text;
         }
 
+        // Fast path: most clipboard text has nothing to fix, so skip logging, caching and timing
+        TypographyEngine engine = TypographyEngine.forProfile(profile);
+        if (engine.isClean(text)) {
+            logger.debug("No typography rule applies for profile: {}, text left unchanged", profile);
+            metricsService.recordCounter("text.cleaning.skipped", "profile", profile);
+            return text;
+        }
+
         logger.info("Cleaning text with profile: {} (length: {} chars)", profile, text.length());
         Timer.Sample sample = metricsService.startTimer();
         
         try {
-            // General typography fixes
-            text = text.replaceAll("(?<=\\w)-{2,}(?=\\w)", "—"); // unspaced em-dash
-            text = text.replaceAll("(?<=\\s)-{2,}(?=\\s)", " — "); // spaced em-dash
-            text = text.replaceAll("\\.\\.\\.", "…");
-
-            switch (profile) {
-            case "HU":
-                // Hungarian: „low-high” quotes, »guillemets« for inner, spaced en-dash for thoughts
-                text = text.replaceAll(" \"([^\"]*)\"", " „$1”");
-                text = text.replaceAll(" '([^']*)'", " »$1«");
-                text = text.replaceAll(" — ", " – ");
-                break;
-            case "DE":
-                // German: „low-high“ quotes, ‚low-high‘ for inner, spaced en-dash for thoughts
-                text = text.replaceAll(" \"([^\"]*)\"", " „$1“");
-                text = text.replaceAll(" '([^']*)'", " ‚$1‘");
-                text = text.replaceAll(" — ", " – ");
-                break;
-            case "EN":
-                // English: “high-high” quotes, ‘high-high’ for inner, unspaced em-dash for breaks
-                text = text.replaceAll(" \"([^\"]*)\"", " “$1”");
-                text = text.replaceAll(" '([^']*)'", " ‘$1’");
-                text = text.replaceAll(" – ", "—");
-                break;
-            case "Shunn":
-                // Shunn manuscript format (text-level): standardize scene breaks
-                // Replace lines with *** or --- with a centered #
-                text = text.replaceAll("(?m)^\\s*\\*\\*\\*\\s*$", " # ");
-                text = text.replaceAll("(?m)^\\s*---\\s*$", " # ");
-                break;
-            default:
+            if (!TypographyEngine.isKnownProfile(profile)) {
                 logger.warn("Unknown text cleaning profile: {}", profile);
-                // Return text with only general typography fixes applied
-                break;
+                // Only the general typography fixes are applied
+            }
+            String cached = cleaningCache.get(text, profile);
+            if (cached != null) {
+                logger.debug("Text cleaning result served from cache for profile: {}", profile);
+                metricsService.recordCounter("text.cleaning.completed", "profile", profile);
+                return cached;
+            }
+
+            String source = text;
+            TypographyEngine.RuleStats ruleStats = new TypographyEngine.RuleStats();
+            if (text.length() >= configurationService.getPerformanceConfig().getParallelCleaningThresholdChars()) {
+                text = engine.clean(text, ForkJoinPool.commonPool(), ruleStats);
+            } else {
+                text = engine.clean(text, ruleStats);
             }
+            cleaningCache.put(source, profile, text);
+            recordRuleStats(engine, profile, ruleStats);
         
             logger.debug("Text cleaned with profile: {}", profile);
             metricsService.recordCounter("text.cleaning.completed", "profile", profile);
@@ -198,7 +202,172 @@ public class EngineBridge {
     }
 
     /**
-     * Performs a quick file format conversion between supported document types.
+     * Cleans a character stream according to the specified typography profile with a fixed
+     * memory ceiling. The output is identical to {@link #cleanText(String, String)} applied to the
+     * whole text, so multi-hundred-MB exports can be fixed without loading them.
+     * 
+     * @param reader The text to clean; not closed by this method
+     * @param writer The destination of the cleaned text; not closed by this method
+     * @param profile The typography profile (HU, DE, EN, Shunn)
+     * @throws IOException If reading or writing fails
+     */
+    public void cleanText(Reader reader, Writer writer, String profile) throws IOException {
+        Objects.requireNonNull(reader, "Reader cannot be null");
+        Objects.requireNonNull(writer, "Writer cannot be null");
+        if (profile == null) {
+            logger.warn("Null profile provided for stream cleaning, copying text unchanged");
+            reader.transferTo(writer);
+            return;
+        }
+
+        logger.info("Cleaning text stream with profile: {}", profile);
+        Timer.Sample sample = metricsService.startTimer();
+
+        try {
+            if (!TypographyEngine.isKnownProfile(profile)) {
+                logger.warn("Unknown text cleaning profile: {}", profile);
+            }
+            TypographyEngine engine = TypographyEngine.forProfile(profile);
+            TypographyEngine.RuleStats ruleStats = new TypographyEngine.RuleStats();
+            engine.clean(reader, writer, getSpillDirectory(), ruleStats);
+            recordRuleStats(engine, profile, ruleStats);
+
+            logger.debug("Text stream cleaned with profile: {}", profile);
+            metricsService.recordCounter("text.cleaning.completed", "profile", profile);
+
+        } catch (IOException e) {
+            logger.error("Error during text stream cleaning with profile: {}", profile, e);
+            metricsService.recordCounter("text.cleaning.error", "profile", profile,
+                    "error", e.getClass().getSimpleName());
+            throw e;
+        } finally {
+            metricsService.stopTimer(sample, "text.cleaning.stream.time");
+        }
+    }
+
+    /**
+     * Fixes the typography of a DOCX manuscript without converting it to text. The rules of the
+     * profile are applied to each paragraph across run boundaries and the result is written back
+     * into the original runs, so all formatting is kept.
+     * 
+     * @param inputFile The DOCX file to fix
+     * @param outputFile The destination DOCX file
+     * @param profile The typography profile (HU, DE, EN, Shunn)
+     * @throws IOException If the document cannot be read or written
+     */
+    public void cleanDocx(java.io.File inputFile, java.io.File outputFile, String profile) throws IOException {
+        Objects.requireNonNull(inputFile, "Input file cannot be null");
+        Objects.requireNonNull(outputFile, "Output file cannot be null");
+        Objects.requireNonNull(profile, "Profile cannot be null");
+
+        // Security validation
+        securityService.validateFileAccess(inputFile);
+        securityService.validateFileSize(inputFile);
+        securityService.validateFileAccess(outputFile.getParentFile());
+
+        if (!TypographyEngine.isKnownProfile(profile)) {
+            logger.warn("Unknown text cleaning profile: {}", profile);
+        }
+        logger.info("Fixing typography of {} with profile: {}", inputFile.getName(), profile);
+
+        metricsService.recordOperationStarted();
+        Timer.Sample sample = metricsService.startTimer();
+        Instant startTime = Instant.now();
+        AllocationCounter allocation = AllocationCounter.start();
+
+        try {
+            TypographyEngine engine = TypographyEngine.forProfile(profile);
+            TypographyEngine.RuleStats ruleStats = new TypographyEngine.RuleStats();
+            recordTransformTimings(docxProcessingService.cleanTypography(inputFile, outputFile, engine, ruleStats));
+            recordRuleStats(engine, profile, ruleStats);
+
+            Duration processingTime = Duration.between(startTime, Instant.now());
+            metricsService.recordDocumentProcessed("docx_typography", inputFile.length(), processingTime);
+            recordAllocation("docx_typography", allocation);
+            logger.info("Typography fixed in {}ms", processingTime.toMillis());
+
+        } catch (IOException e) {
+            logger.error("Fixing typography failed for file: {}", inputFile.getName(), e);
+            metricsService.recordDocumentProcessingError("docx_typography", "typography_error", e);
+            throw e;
+        } finally {
+            metricsService.stopTimer(sample, "document.typography.time");
+            metricsService.recordOperationCompleted();
+        }
+    }
+
+    /**
+     * Opens an incremental cleaning session for text that is cleaned again after every edit, such
+     * as the TypoFix preview. Each update only re-cleans the paragraphs that changed.
+     * 
+     * @param profile The typography profile (HU, DE, EN, Shunn)
+     * @return A new session; not thread-safe
+     */
+    public TypographyEngine.Session openCleaningSession(String profile) {
+        Objects.requireNonNull(profile, "Profile cannot be null");
+        if (!TypographyEngine.isKnownProfile(profile)) {
+            logger.warn("Unknown text cleaning profile: {}", profile);
+        }
+        logger.debug("Opening incremental cleaning session with profile: {}", profile);
+        return TypographyEngine.forProfile(profile).newSession();
+    }
+
+    /**
+     * Reports how long a DOCX pipeline spent parsing, in each transform and serializing
+     */
+    private void recordTransformTimings(Map<String, Long> timings) {
+        timings.forEach((stage, nanos) -> metricsService.recordTime("document.transform.time", nanos,
+                "transform", stage));
+    }
+
+    /**
+     * Reports the heap a conversion allocated, so that the memory of large documents can be
+     * tracked against the file size limit
+     */
+    private void recordAllocation(String documentType, AllocationCounter allocation) {
+        long allocatedBytes = allocation.getAllocatedBytes();
+        if (allocatedBytes < 0) {
+            return;
+        }
+        metricsService.recordBytes("document.processing.allocated", allocatedBytes, "type", documentType);
+        logger.info("Heap allocated during {} conversion: {} MB", documentType, allocatedBytes / (1024 * 1024));
+    }
+
+    /**
+     * Reports how often each rule of the profile fired and how long the cleaning passes took
+     */
+    private void recordRuleStats(TypographyEngine engine, String profile, TypographyEngine.RuleStats ruleStats) {
+        for (TypographyEngine.Rule rule : TypographyEngine.Rule.values()) {
+            if (engine.hasRule(rule)) {
+                metricsService.recordCounter("text.cleaning.rule.hits", ruleStats.getHits(rule),
+                        "profile", profile, "rule", rule.getTag());
+            }
+        }
+        metricsService.recordTime("text.cleaning.pass.time", ruleStats.getScanNanos(),
+                "profile", profile, "pass", "scan");
+        if (engine.hasRule(TypographyEngine.Rule.SCENE_BREAK)) {
+            metricsService.recordTime("text.cleaning.pass.time", ruleStats.getSceneBreakNanos(),
+                    "profile", profile, "pass", "scene_break");
+        }
+    }
+
+    /**
+     * Resolves the configured temp directory for spill files, or null to use the system default
+     */
+    private Path getSpillDirectory() throws IOException {
+        String tempDirectory = configurationService.getProcessingConfig().getTempDirectory();
+        if (tempDirectory == null || tempDirectory.isEmpty()) {
+            return null;
+        }
+        Path directory = Path.of(tempDirectory);
+        Files.createDirectories(directory);
+        return directory;
+    }
+
+    /**
+     * Performs a quick file format conversion between supported document types. The converters
+     * are looked up in the {@link ConverterRegistry} by the file extensions; formats without a
+     * direct converter are converted through intermediate formats.
      * 
      * @param inputFile The source file
      * @param outputFile The target file
@@ -222,26 +391,24 @@ public class EngineBridge {
         metricsService.recordOperationStarted();
         Timer.Sample sample = metricsService.startTimer();
         Instant startTime = Instant.now();
+        AllocationCounter allocation = AllocationCounter.start();
         
         try {
-
-            if (inputName.endsWith(".txt") && outputName.endsWith(".docx")) {
-                convertTxtToDocx(inputFile, outputFile);
-            } else if (inputName.endsWith(".docx") && outputName.endsWith(".txt")) {
-                convertDocxToTxt(inputFile, outputFile);
-            } else if (inputName.endsWith(".md") && outputName.endsWith(".txt")) {
-                convertMdToTxt(inputFile, outputFile);
-            } else if (inputName.endsWith(".odt") && outputName.endsWith(".txt")) {
-                convertOdtToTxt(inputFile, outputFile);
-            } else {
+            ConverterRegistry.Route route = converterRegistry.findRoute(
+                    ConverterRegistry.formatOf(inputFile), ConverterRegistry.formatOf(outputFile));
+            if (route == null) {
                 throw new IOException("Unsupported conversion: from " + inputName + " to " + outputName);
             }
+            logger.debug("Converting along {} (streaming: {}, memory: {})", route, route.isStreaming(),
+                    route.getMemoryUse());
+            route.convert(inputFile, outputFile, getSpillDirectory());
             
             Duration processingTime = Duration.between(startTime, Instant.now());
             long fileSize = inputFile.length();
             String conversionType = getFileExtension(inputName) + "_to_" + getFileExtension(outputName);
             
             metricsService.recordDocumentProcessed(conversionType, fileSize, processingTime);
+            recordAllocation(conversionType, allocation);
             logger.info("Quick conversion completed successfully in {}ms", processingTime.toMillis());
             
         } catch (Exception e) {
@@ -254,59 +421,4 @@ public class EngineBridge {
             metricsService.recordOperationCompleted();
         }
     }
-
-    private void convertTxtToDocx(java.io.File inputFile, java.io.File outputFile) throws java.io.IOException {
-        try (java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.InputStreamReader(new java.io.FileInputStream(inputFile), java.nio.charset.StandardCharsets.UTF_8));
-             org.apache.poi.xwpf.usermodel.XWPFDocument document = new org.apache.poi.xwpf.usermodel.XWPFDocument()) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                document.createParagraph().createRun().setText(line);
-            }
-            try (java.io.FileOutputStream fos = new java.io.FileOutputStream(outputFile)) {
-                document.write(fos);
-            }
-        }
-    }
-
-    private void convertDocxToTxt(java.io.File inputFile, java.io.File outputFile) throws java.io.IOException {
-        try (java.io.FileInputStream fis = new java.io.FileInputStream(inputFile);
-             org.apache.poi.xwpf.usermodel.XWPFDocument document = new org.apache.poi.xwpf.usermodel.XWPFDocument(fis);
-             java.io.BufferedWriter writer = new java.io.BufferedWriter(new java.io.OutputStreamWriter(new java.io.FileOutputStream(outputFile), java.nio.charset.StandardCharsets.UTF_8))) {
-
-            org.apache.poi.xwpf.extractor.XWPFWordExtractor extractor = new org.apache.poi.xwpf.extractor.XWPFWordExtractor(document);
-            writer.write(extractor.getText());
-        }
-    }
-
-    private void convertMdToTxt(java.io.File inputFile, java.io.File outputFile) throws java.io.IOException {
-        MutableDataSet options = new MutableDataSet();
-        Parser parser = Parser.builder(options).build();
-        com.vladsch.flexmark.util.ast.TextCollectingVisitor textVisitor = new com.vladsch.flexmark.util.ast.TextCollectingVisitor();
-
-        String markdownContent = Files.readString(inputFile.toPath());
-        Node document = parser.parse(markdownContent);
-        String plainText = textVisitor.collectAndGetText(document);
-
-        Files.writeString(outputFile.toPath(), plainText);
-    }
-
-    private void convertOdtToTxt(java.io.File inputFile, java.io.File outputFile) throws java.io.IOException {
-        try (OdfTextDocument doc = OdfTextDocument.loadDocument(inputFile);
-             java.io.BufferedWriter writer = new java.io.BufferedWriter(new java.io.OutputStreamWriter(new java.io.FileOutputStream(outputFile), java.nio.charset.StandardCharsets.UTF_8))) {
-
-            // Extract text content using the document's text iterator
-            StringBuilder sb = new StringBuilder();
-            org.w3c.dom.NodeList paragraphs = doc.getContentDom().getElementsByTagName("text:p");
-            for (int i = 0; i < paragraphs.getLength(); i++) {
-                org.w3c.dom.Node p = paragraphs.item(i);
-                if (p.getNodeType() == org.w3c.dom.Node.ELEMENT_NODE) {
-                    sb.append(p.getTextContent()).append("\n");
-                }
-            }
-            writer.write(sb.toString());
-        } catch (Exception e) {
-            // Wrap the generic exception from ODF Toolkit into an IOException
-            throw new java.io.IOException("Failed to process ODT file: " + e.getMessage(), e);
-        }
-    }
 }
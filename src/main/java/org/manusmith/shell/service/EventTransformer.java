@@ -0,0 +1,201 @@
+package org.manusmith.shell.service;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A transform over the StAX events of a document part.
+ * <p>
+ * Transforms are chained as event filters, each reading the events the previous one hands on, so
+ * a {@link TransformPipeline} parses and serializes a part once however many transforms it runs.
+ * A transform sees every element start with the name of the enclosing element and either passes
+ * it on or replaces the whole element with events of its own.
+ */
+public abstract class EventTransformer implements OoxmlPackage.PartTransformer {
+
+    private final String name;
+
+    protected EventTransformer(String name) {
+        this.name = name;
+    }
+
+    /**
+     * The name the transform is reported under in metrics
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Handles an element whose start has just been read.
+     *
+     * @param parent The name of the enclosing element, or null for the root
+     * @param source The events that follow the start element
+     * @param out Receives the events to write instead of the element, or before it when it is
+     *            passed on
+     * @return false to pass the element on unchanged; true if the element has been read from
+     *         {@code source} up to and including its end and replaced by the events in {@code out}
+     */
+    protected abstract boolean transform(StartElement element, QName parent, XMLEventReader source,
+                                         List<XMLEvent> out) throws XMLStreamException;
+
+    /**
+     * Called before the end of an element that was passed on is handed on
+     *
+     * @param out Receives events to insert before the end
+     */
+    protected void beforeEnd(QName element, List<XMLEvent> out) throws XMLStreamException {
+    }
+
+    /**
+     * Whether {@code name} is the WordprocessingML element {@code localPart}
+     */
+    protected static boolean isWord(QName name, String localPart) {
+        return name != null && localPart.equals(name.getLocalPart())
+                && RunProperties.WORDML_NS.equals(name.getNamespaceURI());
+    }
+
+    /**
+     * Runs this transform alone over one part
+     */
+    @Override
+    public void transform(InputStream in, OutputStream out) throws IOException {
+        new TransformPipeline(List.of(this)).transform(in, out);
+    }
+
+    /**
+     * Returns the events of {@code source} as this transform hands them on
+     */
+    Filter filter(XMLEventReader source) {
+        return new Filter(source);
+    }
+
+    /**
+     * The transform applied to one part; not thread-safe
+     */
+    final class Filter implements XMLEventReader {
+        private final XMLEventReader source;
+        private final Deque<QName> open = new ArrayDeque<>();
+        private final List<XMLEvent> pending = new ArrayList<>();
+        private int position;
+        private long nanos;
+
+        private Filter(XMLEventReader source) {
+            this.source = source;
+        }
+
+        /**
+         * Time spent producing events, including the time the sources of this filter took
+         */
+        long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return fill();
+            } catch (XMLStreamException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public XMLEvent nextEvent() throws XMLStreamException {
+            if (!fill()) {
+                throw new NoSuchElementException();
+            }
+            return pending.get(position++);
+        }
+
+        @Override
+        public Object next() {
+            try {
+                return nextEvent();
+            } catch (XMLStreamException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public XMLEvent peek() throws XMLStreamException {
+            return fill() ? pending.get(position) : null;
+        }
+
+        @Override
+        public String getElementText() throws XMLStreamException {
+            StringBuilder text = new StringBuilder();
+            for (XMLEvent event = nextEvent(); !event.isEndElement(); event = nextEvent()) {
+                if (event.isCharacters()) {
+                    text.append(event.asCharacters().getData());
+                }
+            }
+            return text.toString();
+        }
+
+        @Override
+        public XMLEvent nextTag() throws XMLStreamException {
+            XMLEvent event = nextEvent();
+            while (event.isCharacters() && event.asCharacters().isWhiteSpace()) {
+                event = nextEvent();
+            }
+            if (!event.isStartElement() && !event.isEndElement()) {
+                throw new XMLStreamException("Expected a start or end tag", event.getLocation());
+            }
+            return event;
+        }
+
+        @Override
+        public Object getProperty(String property) {
+            return source.getProperty(property);
+        }
+
+        @Override
+        public void close() throws XMLStreamException {
+            source.close();
+        }
+
+        /**
+         * Makes sure an event is pending unless the source is exhausted
+         */
+        private boolean fill() throws XMLStreamException {
+            if (position < pending.size()) {
+                return true;
+            }
+            long start = System.nanoTime();
+            try {
+                pending.clear();
+                position = 0;
+                while (pending.isEmpty() && source.hasNext()) {
+                    XMLEvent event = source.nextEvent();
+                    if (event.isStartElement()) {
+                        StartElement element = event.asStartElement();
+                        if (!transform(element, open.peek(), source, pending)) {
+                            pending.add(event);
+                            open.push(element.getName());
+                        }
+                    } else {
+                        if (event.isEndElement()) {
+                            beforeEnd(open.pop(), pending);
+                        }
+                        pending.add(event);
+                    }
+                }
+                return !pending.isEmpty();
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
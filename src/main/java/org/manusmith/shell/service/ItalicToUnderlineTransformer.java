@@ -0,0 +1,26 @@
+package org.manusmith.shell.service;
+
+/**
+ * Turns italic runs into underlined ones, the manuscript convention for emphasis.
+ * <p>
+ * The italic flag {@code <w:i/>} is dropped and {@code <w:u w:val="single"/>} is added to the
+ * same run properties; colour, highlight, language, character style and every other property of
+ * the run are kept. An underline the run already has is left alone unless it is {@code none}.
+ */
+public class ItalicToUnderlineTransformer extends RunPropertiesTransformer {
+
+    public ItalicToUnderlineTransformer() {
+        super("italic_to_underline");
+    }
+
+    @Override
+    protected void edit(RunProperties properties) {
+        if (!properties.isOn("i")) {
+            return;
+        }
+        properties.remove("i");
+        if (!properties.has("u") || "none".equals(properties.getValue("u"))) {
+            properties.set("u", "single");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.manusmith.shell.service;
+
+import com.vladsch.flexmark.ast.AutoLink;
+import com.vladsch.flexmark.ast.Code;
+import com.vladsch.flexmark.ast.FencedCodeBlock;
+import com.vladsch.flexmark.ast.HardLineBreak;
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.ast.HtmlBlock;
+import com.vladsch.flexmark.ast.HtmlCommentBlock;
+import com.vladsch.flexmark.ast.HtmlEntity;
+import com.vladsch.flexmark.ast.HtmlInline;
+import com.vladsch.flexmark.ast.HtmlInlineComment;
+import com.vladsch.flexmark.ast.IndentedCodeBlock;
+import com.vladsch.flexmark.ast.MailLink;
+import com.vladsch.flexmark.ast.Paragraph;
+import com.vladsch.flexmark.ast.Reference;
+import com.vladsch.flexmark.ast.SoftLineBreak;
+import com.vladsch.flexmark.ast.Text;
+import com.vladsch.flexmark.ast.ThematicBreak;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.ContentNode;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.data.DataHolder;
+import com.vladsch.flexmark.util.data.MutableDataSet;
+import com.vladsch.flexmark.util.sequence.BasedSequence;
+import com.vladsch.flexmark.util.sequence.Escaping;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Extracts the text of a Markdown document, dropping the markup.
+ * <p>
+ * The parser is built once and shared, since a flexmark parser holds no state between documents,
+ * and the syntax tree is walked without recursion, writing each piece of text straight to the
+ * writer instead of collecting it first. Headings, paragraphs and code blocks end with a line
+ * break, soft and hard line breaks are kept, escapes and entities are resolved, and raw HTML and
+ * link reference definitions are left out.
+ */
+public class MarkdownTextExtractor {
+
+    private static final DataHolder OPTIONS = new MutableDataSet().toImmutable();
+    private static final Parser PARSER = Parser.builder(OPTIONS).build();
+
+    /**
+     * Writes the text of a UTF-8 Markdown file; the writer is not closed
+     *
+     * @return The number of characters written
+     */
+    public long extractText(File markdownFile, Writer writer) throws IOException {
+        Node document;
+        try (Reader reader = Files.newBufferedReader(markdownFile.toPath(), StandardCharsets.UTF_8)) {
+            document = PARSER.parseReader(reader);
+        }
+        return extractText(document, writer);
+    }
+
+    private static long extractText(Node document, Writer writer) throws IOException {
+        TextOutput out = new TextOutput(writer);
+        Node node = document.getFirstChild();
+        while (node != null) {
+            Node child = enter(node, out) ? node.getFirstChild() : null;
+            if (child != null) {
+                node = child;
+                continue;
+            }
+            while (node != document && node.getNext() == null) {
+                leave(node, out);
+                node = node.getParent();
+            }
+            if (node == document) {
+                break;
+            }
+            leave(node, out);
+            node = node.getNext();
+        }
+        out.separate((char) 0);
+        return out.getWritten();
+    }
+
+    /**
+     * Writes the text of a leaf node
+     *
+     * @return Whether the children of the node are to be visited
+     */
+    private static boolean enter(Node node, TextOutput out) throws IOException {
+        if (node instanceof Text || node instanceof HtmlEntity) {
+            out.write(Escaping.unescapeString(node.getChars()));
+        } else if (node instanceof Code code) {
+            out.write(code.getText());
+        } else if (node instanceof AutoLink link) {
+            out.write(link.getText());
+        } else if (node instanceof MailLink link) {
+            out.write(link.getText());
+        } else if (node instanceof SoftLineBreak || node instanceof HardLineBreak) {
+            out.write('\n');
+        } else if (node instanceof FencedCodeBlock || node instanceof IndentedCodeBlock) {
+            out.write(trimLineEnds(((ContentNode) node).getContentChars()));
+        } else if (!(node instanceof HtmlBlock || node instanceof HtmlCommentBlock
+                || node instanceof HtmlInline || node instanceof HtmlInlineComment
+                || node instanceof Reference || node instanceof ThematicBreak)) {
+            return true;
+        }
+        return false;
+    }
+
+    private static void leave(Node node, TextOutput out) throws IOException {
+        if (node instanceof Paragraph || node instanceof Heading
+                || node instanceof FencedCodeBlock || node instanceof IndentedCodeBlock) {
+            out.separate('\n');
+        }
+    }
+
+    private static CharSequence trimLineEnds(BasedSequence text) {
+        int end = text.length();
+        while (end > 0 && (text.charAt(end - 1) == '\n' || text.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return text.subSequence(0, end);
+    }
+}
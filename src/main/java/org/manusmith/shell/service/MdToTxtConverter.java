@@ -0,0 +1,49 @@
+package org.manusmith.shell.service;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Extracts the text of a Markdown file, dropping the markup.
+ * <p>
+ * The output is written as the syntax tree is walked, but the tree itself is built from the whole
+ * file first, so memory use still grows with the document.
+ */
+public class MdToTxtConverter implements DocumentConverter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MarkdownTextExtractor extractor = new MarkdownTextExtractor();
+
+    @Override
+    public String getSourceFormat() {
+        return "md";
+    }
+
+    @Override
+    public String getTargetFormat() {
+        return "txt";
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public MemoryUse getMemoryUse() {
+        return MemoryUse.DOCUMENT;
+    }
+
+    @Override
+    public void convert(File inputFile, File outputFile) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(outputFile.toPath()), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            extractor.extractText(inputFile, writer);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.manusmith.shell.service;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
@@ -13,6 +14,7 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.management.RuntimeMXBean;
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -29,6 +31,7 @@ public class MetricsService {
     
     // Application metrics
     private final Timer documentProcessingTimer;
+    private final Timer previewLatencyTimer;
     private final AtomicInteger activeOperations;
     private final AtomicLong totalProcessedSize;
     
@@ -44,6 +47,10 @@ public class MetricsService {
         this.documentProcessingTimer = Timer.builder("document.processing.time")
                 .description("Time taken to process documents")
                 .register(meterRegistry);
+        this.previewLatencyTimer = Timer.builder("typofix.preview.latency")
+                .description("Time from the last edit to the updated TypoFix preview")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
                 
         this.activeOperations = new AtomicInteger(0);
         this.totalProcessedSize = new AtomicLong(0);
@@ -158,6 +165,16 @@ public class MetricsService {
                 documentType, errorType, error.getClass().getSimpleName());
     }
 
+    /**
+     * Records the time from an edit to the preview that reflects it
+     */
+    public void recordPreviewLatency(Duration latency) {
+        if (!configurationService.getMetricsConfig().isEnabled()) {
+            return;
+        }
+        previewLatencyTimer.record(latency);
+    }
+
     /**
      * Records the start of an operation
      */
@@ -186,6 +203,49 @@ public class MetricsService {
                 .increment();
     }
 
+    /**
+     * Records a custom counter increment by the given amount
+     */
+    public void recordCounter(String name, double amount, String... tags) {
+        if (!configurationService.getMetricsConfig().isEnabled()) {
+            return;
+        }
+        
+        Counter.builder(name)
+                .tags(tags)
+                .register(meterRegistry)
+                .increment(amount);
+    }
+
+    /**
+     * Records an already measured duration on a custom timer
+     */
+    public void recordTime(String name, long nanos, String... tags) {
+        if (!configurationService.getMetricsConfig().isEnabled()) {
+            return;
+        }
+        
+        Timer.builder(name)
+                .tags(tags)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records an amount of memory on a custom distribution summary
+     */
+    public void recordBytes(String name, long bytes, String... tags) {
+        if (!configurationService.getMetricsConfig().isEnabled()) {
+            return;
+        }
+        
+        DistributionSummary.builder(name)
+                .tags(tags)
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
     /**
      * Records a custom timer
      */
@@ -0,0 +1,170 @@
+package org.manusmith.shell.service;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.Set;
+
+/**
+ * Extracts the text of an ODT document without loading its DOM.
+ * <p>
+ * {@code content.xml} is read from the zip with a StAX cursor and written out paragraph by
+ * paragraph, so memory use stays flat however long the manuscript is. Paragraphs, headings and
+ * the paragraphs of list items end with a line break, the cells of a table row are separated by
+ * tabs, {@code text:s}, {@code text:tab} and {@code text:line-break} become spaces, a tab and a
+ * line break, and other white space is collapsed the way ODF applications display it. Comments,
+ * notes, tracked deletions and image descriptions are left out.
+ */
+public class OdtTextExtractor {
+
+    static final String CONTENT_PART = "content.xml";
+
+    private static final String TEXT_NS = "urn:oasis:names:tc:opendocument:xmlns:text:1.0";
+    private static final String TABLE_NS = "urn:oasis:names:tc:opendocument:xmlns:table:1.0";
+    private static final String OFFICE_NS = "urn:oasis:names:tc:opendocument:xmlns:office:1.0";
+    private static final String SVG_NS = "urn:oasis:names:tc:opendocument:xmlns:svg-compatible:1.0";
+
+    private static final Set<QName> SKIPPED = Set.of(
+            new QName(OFFICE_NS, "annotation"),
+            new QName(TEXT_NS, "note"),
+            new QName(TEXT_NS, "tracked-changes"),
+            new QName(SVG_NS, "title"),
+            new QName(SVG_NS, "desc"));
+
+    private static final QName SPACE_COUNT = new QName(TEXT_NS, "c");
+
+    /**
+     * Writes the text of an ODT file; the writer is not closed
+     *
+     * @return The number of characters written
+     */
+    public long extractText(File odtFile, Writer writer) throws IOException {
+        try (ZipFile zip = ZipFile.builder().setFile(odtFile).get()) {
+            ZipArchiveEntry entry = zip.getEntry(CONTENT_PART);
+            if (entry == null) {
+                throw new IOException("Not an ODT document: " + odtFile.getName());
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                return extractText(XmlPartWriter.newStreamReader(in), writer);
+            } catch (XMLStreamException e) {
+                throw new IOException("Invalid content.xml in " + odtFile.getName() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static long extractText(XMLStreamReader reader, Writer writer) throws XMLStreamException, IOException {
+        TextOutput out = new TextOutput(writer);
+        int skipDepth = 0;
+        int paragraphDepth = 0;
+        // White space is collapsed to one space and dropped at the start and end of a line
+        boolean lineStart = true;
+        boolean pendingSpace = false;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    if (skipDepth > 0 || SKIPPED.contains(reader.getName())) {
+                        skipDepth++;
+                    } else if (TEXT_NS.equals(reader.getNamespaceURI())) {
+                        switch (reader.getLocalName()) {
+                            case "p", "h" -> {
+                                paragraphDepth++;
+                                lineStart = true;
+                                pendingSpace = false;
+                            }
+                            case "s" -> {
+                                if (pendingSpace) {
+                                    out.write(' ');
+                                }
+                                int count = spaceCount(reader);
+                                for (int i = 0; i < count; i++) {
+                                    out.write(' ');
+                                }
+                                lineStart = false;
+                                pendingSpace = false;
+                            }
+                            case "tab", "line-break" -> {
+                                if (pendingSpace) {
+                                    out.write(' ');
+                                }
+                                out.write("tab".equals(reader.getLocalName()) ? '\t' : '\n');
+                                lineStart = "line-break".equals(reader.getLocalName());
+                                pendingSpace = false;
+                            }
+                            default -> { }
+                        }
+                    }
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    if (skipDepth > 0) {
+                        skipDepth--;
+                    } else if (TEXT_NS.equals(reader.getNamespaceURI())) {
+                        String localName = reader.getLocalName();
+                        if ("p".equals(localName) || "h".equals(localName)) {
+                            paragraphDepth--;
+                            out.separate('\n');
+                            pendingSpace = false;
+                        }
+                    } else if (TABLE_NS.equals(reader.getNamespaceURI())) {
+                        // The break after the last paragraph of a cell separates it from the next cell
+                        switch (reader.getLocalName()) {
+                            case "table-cell", "covered-table-cell" -> out.replaceSeparator('\t');
+                            case "table-row" -> out.replaceSeparator('\n');
+                            default -> { }
+                        }
+                    }
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+                    if (skipDepth > 0 || paragraphDepth == 0) {
+                        break;
+                    }
+                    char[] text = reader.getTextCharacters();
+                    int start = reader.getTextStart();
+                    int end = start + reader.getTextLength();
+                    int runStart = start;
+                    for (int i = start; i < end; i++) {
+                        char c = text[i];
+                        if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                            if (i > runStart) {
+                                out.write(text, runStart, i - runStart);
+                                lineStart = false;
+                            }
+                            pendingSpace = !lineStart;
+                            runStart = i + 1;
+                        } else if (pendingSpace) {
+                            out.write(' ');
+                            pendingSpace = false;
+                        }
+                    }
+                    if (end > runStart) {
+                        out.write(text, runStart, end - runStart);
+                        lineStart = false;
+                    }
+                }
+                default -> { }
+            }
+        }
+        reader.close();
+        out.separate((char) 0);
+        return out.getWritten();
+    }
+
+    private static int spaceCount(XMLStreamReader reader) {
+        String count = reader.getAttributeValue(SPACE_COUNT.getNamespaceURI(), SPACE_COUNT.getLocalPart());
+        if (count == null) {
+            return 1;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(count.trim()));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+}
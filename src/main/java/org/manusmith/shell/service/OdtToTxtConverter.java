@@ -0,0 +1,46 @@
+package org.manusmith.shell.service;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Extracts the text of an ODT document, writing it out while the document is read
+ */
+public class OdtToTxtConverter implements DocumentConverter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OdtTextExtractor extractor = new OdtTextExtractor();
+
+    @Override
+    public String getSourceFormat() {
+        return "odt";
+    }
+
+    @Override
+    public String getTargetFormat() {
+        return "txt";
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    @Override
+    public MemoryUse getMemoryUse() {
+        return MemoryUse.CONSTANT;
+    }
+
+    @Override
+    public void convert(File inputFile, File outputFile) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(outputFile.toPath()), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            extractor.extractText(inputFile, writer);
+        }
+    }
+}
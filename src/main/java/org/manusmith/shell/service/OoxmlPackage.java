@@ -0,0 +1,338 @@
+package org.manusmith.shell.service;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * An OOXML package (DOCX) opened for rewriting part by part.
+ * <p>
+ * Parts that no transform touches are copied to the output as raw compressed zip entries, without
+ * being inflated and deflated again; only the parts a transform rewrites are re-encoded. For
+ * manuscripts with embedded images and fonts most of the output is copied byte for byte.
+ * <p>
+ * The package is read through random access on the file, so no part is held in memory until it
+ * is read. With a spill directory, parts rewritten concurrently are buffered in temp files there
+ * rather than on the heap, which keeps memory use flat for very large documents.
+ */
+public class OoxmlPackage implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(OoxmlPackage.class);
+
+    /**
+     * Rewrites the content of one part. Neither stream may be closed.
+     */
+    @FunctionalInterface
+    public interface PartTransformer {
+        void transform(InputStream in, OutputStream out) throws IOException;
+    }
+
+    static final String CONTENT_TYPES_PART = "[Content_Types].xml";
+
+    private final File file;
+    private final Path spillDirectory;
+    private final ZipFile zip;
+    private final Map<String, String> defaultContentTypes = new HashMap<>();
+    private final Map<String, String> overrideContentTypes = new HashMap<>();
+
+    public OoxmlPackage(File file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+     * @param spillDirectory Buffers concurrently rewritten parts in temp files in this directory,
+     *                       or null to buffer them in memory
+     */
+    public OoxmlPackage(File file, Path spillDirectory) throws IOException {
+        this.file = file;
+        this.spillDirectory = spillDirectory;
+        this.zip = ZipFile.builder().setFile(file).get();
+        try {
+            readContentTypes();
+        } catch (IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        }
+    }
+
+    public boolean hasPart(String name) {
+        return zip.getEntry(name) != null;
+    }
+
+    /**
+     * Opens a part for reading; the stream must be closed by the caller
+     */
+    public InputStream getInputStream(String name) throws IOException {
+        ZipArchiveEntry entry = zip.getEntry(name);
+        if (entry == null) {
+            throw new IOException("Part not found in " + file.getName() + ": " + name);
+        }
+        return zip.getInputStream(entry);
+    }
+
+    /**
+     * Returns the content type declared for a part in {@code [Content_Types].xml}, or null
+     */
+    public String getContentType(String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        String contentType = overrideContentTypes.get(key);
+        if (contentType == null) {
+            contentType = defaultContentTypes.get(key.substring(key.lastIndexOf('.') + 1));
+        }
+        return contentType;
+    }
+
+    /**
+     * Returns the names of the parts with one of the given content types, in package order
+     */
+    public List<String> getPartsOfType(Collection<String> contentTypes) {
+        List<String> parts = new ArrayList<>();
+        Enumeration<ZipArchiveEntry> entries = zip.getEntriesInPhysicalOrder();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            String contentType = getContentType(name);
+            // Immutable sets reject null lookups, and a part without a declared type matches none
+            if (contentType != null && contentTypes.contains(contentType)) {
+                parts.add(name);
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Writes the package to {@code output}, keeping the order of the entries.
+     *
+     * @param transformers Returns the transformer for a part name, or null to copy the part as is
+     */
+    public void writeTo(File output, Function<String, PartTransformer> transformers) throws IOException {
+        writeTo(output, transformers, Map.of(), null);
+    }
+
+    /**
+     * Writes the package to {@code output}, keeping the order of the entries.
+     * <p>
+     * With an executor, the transformed parts are rewritten concurrently into compressed buffers,
+     * held in memory or in the spill directory, and the package is then assembled in the original
+     * entry order, so the output is the same as without one. The transformers must then be safe
+     * to use from several threads.
+     *
+     * @param transformers Returns the transformer for a part name, or null to copy the part as is
+     * @param additions New parts to add after the existing ones, by name
+     * @param executor Runs the part transforms, or null to transform each part while writing it
+     */
+    public void writeTo(File output, Function<String, PartTransformer> transformers, Map<String, byte[]> additions,
+                        Executor executor) throws IOException {
+        List<ZipArchiveEntry> entries = Collections.list(zip.getEntriesInPhysicalOrder());
+        Map<ZipArchiveEntry, PartTransformer> transformed = new LinkedHashMap<>();
+        for (ZipArchiveEntry entry : entries) {
+            PartTransformer transformer = transformers.apply(entry.getName());
+            if (transformer != null) {
+                transformed.put(entry, transformer);
+            }
+        }
+
+        // Only worth handing to the pool when there is more than one part to work on
+        Map<ZipArchiveEntry, CompletableFuture<DeflatedPart>> pending = new HashMap<>();
+        List<Path> spillFiles = new ArrayList<>();
+        try {
+            if (executor != null && transformed.size() > 1) {
+                for (Map.Entry<ZipArchiveEntry, PartTransformer> part : transformed.entrySet()) {
+                    // Created up front so that every spill file is deleted below, even if writing fails
+                    Path spill = null;
+                    if (spillDirectory != null) {
+                        spill = Files.createTempFile(spillDirectory, ".manusmith-part", ".tmp");
+                        spillFiles.add(spill);
+                    }
+                    Path buffer = spill;
+                    pending.put(part.getKey(), CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return deflate(part.getKey(), part.getValue(), buffer);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, executor));
+                }
+            }
+            write(output, entries, transformed, pending, additions);
+        } finally {
+            pending.values().forEach(future -> future.cancel(false));
+            for (Path spill : spillFiles) {
+                deleteSpillFile(spill);
+            }
+        }
+        logger.debug("Wrote {} from {}: {} parts rewritten ({} concurrently, {} spilled to disk), {} copied raw, {} added",
+                output.getName(), file.getName(), transformed.size(), pending.size(), spillFiles.size(),
+                entries.size() - transformed.size(), additions.size());
+    }
+
+    private void write(File output, List<ZipArchiveEntry> entries, Map<ZipArchiveEntry, PartTransformer> transformed,
+                       Map<ZipArchiveEntry, CompletableFuture<DeflatedPart>> pending, Map<String, byte[]> additions)
+            throws IOException {
+        try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(output)) {
+            for (ZipArchiveEntry entry : entries) {
+                PartTransformer transformer = transformed.get(entry);
+                if (transformer == null) {
+                    out.addRawArchiveEntry(entry, zip.getRawInputStream(entry));
+                } else if (pending.containsKey(entry)) {
+                    join(pending.get(entry)).writeTo(out);
+                } else {
+                    ZipArchiveEntry rewritten = new ZipArchiveEntry(entry.getName());
+                    rewritten.setTime(entry.getTime());
+                    out.putArchiveEntry(rewritten);
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        transformer.transform(in, out);
+                    }
+                    out.closeArchiveEntry();
+                }
+            }
+            for (Map.Entry<String, byte[]> addition : additions.entrySet()) {
+                out.putArchiveEntry(new ZipArchiveEntry(addition.getKey()));
+                out.write(addition.getValue());
+                out.closeArchiveEntry();
+            }
+        }
+    }
+
+    /**
+     * A rewritten part, deflated and ready to be added to the output as a raw entry
+     *
+     * @param data The deflated content, or null when it was spilled to {@code spill}
+     */
+    private record DeflatedPart(ZipArchiveEntry entry, byte[] data, Path spill) {
+        void writeTo(ZipArchiveOutputStream out) throws IOException {
+            if (data != null) {
+                out.addRawArchiveEntry(entry, new ByteArrayInputStream(data));
+                return;
+            }
+            try (InputStream in = Files.newInputStream(spill)) {
+                out.addRawArchiveEntry(entry, in);
+            }
+        }
+    }
+
+    /**
+     * @param spill The file to buffer the deflated part in, or null to buffer it in memory
+     */
+    private DeflatedPart deflate(ZipArchiveEntry entry, PartTransformer transformer, Path spill) throws IOException {
+        ByteArrayOutputStream memory = spill == null ? new ByteArrayOutputStream() : null;
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        CRC32 crc = new CRC32();
+        try {
+            try (InputStream in = zip.getInputStream(entry);
+                 OutputStream data = memory != null ? memory : new BufferedOutputStream(Files.newOutputStream(spill));
+                 DeflaterOutputStream deflated = new DeflaterOutputStream(data, deflater)) {
+                transformer.transform(in, new CheckedOutputStream(deflated, crc));
+                deflated.finish();
+            }
+            ZipArchiveEntry rewritten = new ZipArchiveEntry(entry.getName());
+            rewritten.setTime(entry.getTime());
+            rewritten.setMethod(ZipArchiveEntry.DEFLATED);
+            rewritten.setCrc(crc.getValue());
+            rewritten.setSize(deflater.getBytesRead());
+            rewritten.setCompressedSize(deflater.getBytesWritten());
+            return new DeflatedPart(rewritten, memory != null ? memory.toByteArray() : null, spill);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void deleteSpillFile(Path spill) {
+        try {
+            Files.deleteIfExists(spill);
+        } catch (IOException e) {
+            // Still being written by a cancelled transform on a platform that locks open files
+            logger.debug("Could not delete spill file {}: {}", spill, e.getMessage());
+            spill.toFile().deleteOnExit();
+        }
+    }
+
+    private static DeflatedPart join(CompletableFuture<DeflatedPart> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    private void readContentTypes() throws IOException {
+        ZipArchiveEntry entry = zip.getEntry(CONTENT_TYPES_PART);
+        if (entry == null) {
+            return;
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            XMLEventReader reader = XmlPartWriter.newReader(in);
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (!event.isStartElement()) {
+                    continue;
+                }
+                StartElement element = event.asStartElement();
+                String contentType = attribute(element, "ContentType");
+                switch (element.getName().getLocalPart()) {
+                    case "Default" -> defaultContentTypes.put(
+                            attribute(element, "Extension").toLowerCase(Locale.ROOT), contentType);
+                    // Part names are absolute in the package, zip entry names are not
+                    case "Override" -> overrideContentTypes.put(
+                            attribute(element, "PartName").replaceFirst("^/", "").toLowerCase(Locale.ROOT),
+                            contentType);
+                    default -> { }
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid content types in " + file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String attribute(StartElement element, String name) {
+        Attribute attribute = element.getAttributeByName(new QName(name));
+        return attribute != null ? attribute.getValue() : "";
+    }
+}
@@ -0,0 +1,161 @@
+package org.manusmith.shell.service;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The properties of one run ({@code w:r/w:rPr}), read from a part stream so they can be edited in
+ * place.
+ * <p>
+ * Each property keeps its original markup, including attributes and nested content this class
+ * does not understand, so a property that is not edited is written back exactly as it was read.
+ * Added properties are inserted at the position the CT_RPr schema sequence requires.
+ */
+public final class RunProperties {
+
+    static final String WORDML_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    // The CT_RPr sequence; extension elements in other namespaces follow it
+    private static final List<String> ORDER = List.of("rStyle", "rFonts", "b", "bCs", "i", "iCs", "caps",
+            "smallCaps", "strike", "dstrike", "outline", "shadow", "emboss", "imprint", "noProof", "snapToGrid",
+            "vanish", "webHidden", "color", "spacing", "w", "kern", "position", "sz", "szCs", "highlight", "u",
+            "effect", "bdr", "shd", "fitText", "vertAlign", "rtl", "cs", "em", "lang", "eastAsianLayout",
+            "specVanish", "oMath", "rPrChange");
+
+    private static final XMLEventFactory EVENTS = XMLEventFactory.newDefaultFactory();
+
+    /**
+     * One child of {@code w:rPr}: its start element and all of its events, including whitespace
+     * or comments that preceded it
+     */
+    private record Property(StartElement element, List<XMLEvent> events) {}
+
+    private final StartElement start;
+    private final List<Property> properties = new ArrayList<>();
+    private final List<XMLEvent> trailing = new ArrayList<>();
+    private XMLEvent end;
+
+    private RunProperties(StartElement start) {
+        this.start = start;
+    }
+
+    /**
+     * Reads the content of a {@code w:rPr} element whose start has just been read, up to and
+     * including its end
+     */
+    static RunProperties read(StartElement start, XMLEventReader reader) throws XMLStreamException {
+        RunProperties result = new RunProperties(start);
+        List<XMLEvent> pending = new ArrayList<>();
+        while (result.end == null) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                pending.add(event);
+                for (int depth = 1; depth > 0; ) {
+                    XMLEvent inner = reader.nextEvent();
+                    depth += inner.isStartElement() ? 1 : inner.isEndElement() ? -1 : 0;
+                    pending.add(inner);
+                }
+                result.properties.add(new Property(event.asStartElement(), pending));
+                pending = new ArrayList<>();
+            } else if (event.isEndElement()) {
+                result.trailing.addAll(pending);
+                result.end = event;
+            } else {
+                pending.add(event);
+            }
+        }
+        return result;
+    }
+
+    public boolean has(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * Returns the {@code w:val} attribute of a property, or null if the property or the attribute
+     * is missing
+     */
+    public String getValue(String name) {
+        int index = indexOf(name);
+        if (index < 0) {
+            return null;
+        }
+        Attribute val = properties.get(index).element().getAttributeByName(new QName(WORDML_NS, "val"));
+        return val != null ? val.getValue() : null;
+    }
+
+    /**
+     * Whether an on/off property such as {@code <w:i/>} or {@code <w:i w:val="true"/>} is set
+     */
+    public boolean isOn(String name) {
+        if (!has(name)) {
+            return false;
+        }
+        String val = getValue(name);
+        return val == null || !(val.equals("0") || val.equals("false") || val.equals("off"));
+    }
+
+    public void remove(String name) {
+        int index = indexOf(name);
+        if (index >= 0) {
+            properties.remove(index);
+        }
+    }
+
+    /**
+     * Sets a property to {@code <w:name w:val="value"/>}, replacing it if present
+     */
+    public void set(String name, String value) {
+        String prefix = start.getName().getPrefix();
+        Attribute val = EVENTS.createAttribute(prefix, WORDML_NS, "val", value);
+        StartElement element = EVENTS.createStartElement(prefix, WORDML_NS, name, List.of(val).iterator(), null);
+        Property property = new Property(element,
+                List.of(element, EVENTS.createEndElement(prefix, WORDML_NS, name)));
+
+        int index = indexOf(name);
+        if (index >= 0) {
+            properties.set(index, property);
+            return;
+        }
+        int rank = rank(element.getName());
+        index = 0;
+        while (index < properties.size() && rank(properties.get(index).element().getName()) <= rank) {
+            index++;
+        }
+        properties.add(index, property);
+    }
+
+    /**
+     * Adds the events of the edited properties to {@code out}
+     */
+    void writeTo(List<XMLEvent> out) {
+        out.add(start);
+        for (Property property : properties) {
+            out.addAll(property.events());
+        }
+        out.addAll(trailing);
+        out.add(end);
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < properties.size(); i++) {
+            QName propertyName = properties.get(i).element().getName();
+            if (name.equals(propertyName.getLocalPart()) && WORDML_NS.equals(propertyName.getNamespaceURI())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int rank(QName name) {
+        int rank = WORDML_NS.equals(name.getNamespaceURI()) ? ORDER.indexOf(name.getLocalPart()) : -1;
+        return rank >= 0 ? rank : ORDER.size();
+    }
+}
@@ -0,0 +1,41 @@
+package org.manusmith.shell.service;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.util.List;
+
+/**
+ * Streaming transform that edits the properties of every run in a WordprocessingML part.
+ * <p>
+ * The properties of each run ({@code w:r/w:rPr}) are buffered, handed to
+ * {@link #edit(RunProperties)} and written back in place; everything else is passed on as it is
+ * read. Runs are found wherever they occur, so paragraphs in tables, text boxes, headers, footers
+ * and notes are covered as long as their part is transformed. Memory use depends only on the
+ * nesting depth of the markup, not on the length of the part.
+ */
+public abstract class RunPropertiesTransformer extends EventTransformer {
+
+    protected RunPropertiesTransformer(String name) {
+        super(name);
+    }
+
+    /**
+     * Edits the properties of one run in place
+     */
+    protected abstract void edit(RunProperties properties);
+
+    @Override
+    protected boolean transform(StartElement element, QName parent, XMLEventReader source, List<XMLEvent> out)
+            throws XMLStreamException {
+        if (!isWord(element.getName(), "rPr") || !isWord(parent, "r")) {
+            return false;
+        }
+        RunProperties properties = RunProperties.read(element, source);
+        edit(properties);
+        properties.writeTo(out);
+        return true;
+    }
+}
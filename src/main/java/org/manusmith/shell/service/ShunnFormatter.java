@@ -0,0 +1,457 @@
+package org.manusmith.shell.service;
+
+import org.manusmith.shell.dto.AuthorMeta;
+import org.manusmith.shell.dto.ManuscriptFont;
+import org.manusmith.shell.util.Strings;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Lays a document out in standard manuscript (Shunn) format.
+ * <p>
+ * The body of the main document part is rewritten in the same pass as the other transforms. The
+ * contact block, title and byline are put before the first paragraph, scene-break lines become a
+ * centered {@code #}, and {@code END} closes the text. Direct fonts, sizes, colours, spacing,
+ * indents and alignment are dropped from the body paragraphs so that the template styles apply:
+ * 12pt Courier or Times, double spaced, with a half-inch first-line indent. Emphasis, footnotes
+ * and everything else is kept.
+ * <p>
+ * {@link #prepare} adds the template styles and the running header (surname / title / page) to
+ * the package. Styles the template does not define, such as headings, list paragraphs or
+ * character styles for emphasis, are kept. An instance formats one document and is only applied
+ * to its main part.
+ */
+public class ShunnFormatter extends EventTransformer {
+
+    static final String HEADER_PART = "shunn-header.xml";
+
+    private static final String STYLES_TYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.styles+xml";
+    private static final String HEADER_TYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.header+xml";
+    private static final String RELATIONSHIP_TYPES = "http://schemas.openxmlformats.org/officeDocument/2006/relationships/";
+    private static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String CONTENT_TYPES_NS = "http://schemas.openxmlformats.org/package/2006/content-types";
+
+    // ***, * * *, ---, ~~~ or a lone # on a line of its own
+    private static final Pattern SCENE_BREAK = Pattern.compile("\\s*(#|\\*(\\s*\\*){2,}|-(\\s*-){2,}|~(\\s*~){2,})\\s*");
+
+    // 2345, or 2,345, 2.345 and 2 345 grouped by thousands
+    private static final Pattern WORD_COUNT = Pattern.compile("\\d+|\\d{1,3}([,. ])\\d{3}(\\1\\d{3})*");
+
+    // Paragraphs an earlier run of the formatter added; they are replaced, not repeated
+    private static final Set<String> FRONT_MATTER_STYLES = Set.of("ShunnContact", "ShunnTitle", "ShunnByline", "ShunnEnd");
+
+    private static final XMLEventFactory EVENTS = XMLEventFactory.newDefaultFactory();
+
+    private static final Set<String> PARAGRAPH_OVERRIDES = Set.of("spacing", "ind", "jc", "sectPr");
+    private static final Set<String> RUN_OVERRIDES = Set.of("rFonts", "sz", "szCs", "color");
+
+    private final AuthorMeta authorMeta;
+    private final ShunnTemplate template;
+    private final List<XMLEvent> frontMatter;
+    private boolean bodyStarted;
+    private boolean bodyEnded;
+
+    public ShunnFormatter(AuthorMeta authorMeta, ManuscriptFont font) throws IOException {
+        super("shunn_format");
+        this.authorMeta = Objects.requireNonNull(authorMeta, "Author metadata cannot be null");
+        this.template = ShunnTemplate.forFont(font);
+        this.frontMatter = frontMatter(authorMeta);
+    }
+
+    /**
+     * Adds the template styles and the running header to the package, with the relationships
+     * and content types they need.
+     *
+     * @param mainPart The main document part, which this formatter transforms
+     * @param edits Receives the transformers for existing parts
+     * @param additions Receives the content of new parts
+     */
+    void prepare(OoxmlPackage docx, String mainPart, Map<String, OoxmlPackage.PartTransformer> edits,
+                 Map<String, byte[]> additions) throws IOException {
+        String directory = mainPart.substring(0, mainPart.lastIndexOf('/') + 1);
+        StringBuilder relationships = new StringBuilder();
+        StringBuilder overrides = new StringBuilder();
+
+        List<String> styleParts = docx.getPartsOfType(Set.of(STYLES_TYPE));
+        if (styleParts.isEmpty()) {
+            additions.put(directory + "styles.xml", template.getStyles());
+            relationships.append(relationship("rIdShunnStyles", "styles", "styles.xml"));
+            overrides.append(override(directory + "styles.xml", STYLES_TYPE));
+        }
+        for (String part : styleParts) {
+            edits.put(part, mergeStyles());
+        }
+
+        // A document formatted before already has the header and its relationship
+        String header = directory + HEADER_PART;
+        byte[] headerContent = template.getHeader(headerText());
+        if (docx.hasPart(header)) {
+            edits.put(header, replaceWith(headerContent));
+        } else {
+            additions.put(header, headerContent);
+            relationships.append(relationship(ShunnTemplate.HEADER_RELATIONSHIP_ID, "header", HEADER_PART));
+            overrides.append(override(header, HEADER_TYPE));
+        }
+
+        if (relationships.isEmpty()) {
+            return;
+        }
+        String relationshipsRoot = "<Relationships xmlns=\"" + RELATIONSHIPS_NS + "\">" + relationships + "</Relationships>";
+        String rels = directory + "_rels/" + mainPart.substring(directory.length()) + ".rels";
+        if (docx.hasPart(rels)) {
+            edits.put(rels, appendToRoot(relationshipsRoot));
+        } else {
+            additions.put(rels, ("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\r\n" + relationshipsRoot)
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        edits.put(OoxmlPackage.CONTENT_TYPES_PART,
+                appendToRoot("<Types xmlns=\"" + CONTENT_TYPES_NS + "\">" + overrides + "</Types>"));
+    }
+
+    @Override
+    protected boolean transform(StartElement element, QName parent, XMLEventReader source, List<XMLEvent> out)
+            throws XMLStreamException {
+        if (!isWord(parent, "body")) {
+            return false;
+        }
+        startBody(out);
+        if (isWord(element.getName(), "p")) {
+            paragraph(read(element, source), out);
+            return true;
+        }
+        if (isWord(element.getName(), "sectPr")) {
+            read(element, source);
+            endBody(out);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected void beforeEnd(QName element, List<XMLEvent> out) {
+        // Documents without section properties of their own get the template ones
+        if (isWord(element, "body")) {
+            startBody(out);
+            endBody(out);
+        }
+    }
+
+    private void startBody(List<XMLEvent> out) {
+        if (!bodyStarted) {
+            out.addAll(frontMatter);
+            bodyStarted = true;
+        }
+    }
+
+    private void endBody(List<XMLEvent> out) {
+        if (!bodyEnded) {
+            out.addAll(template.getEnd());
+            out.addAll(template.getSection());
+            bodyEnded = true;
+        }
+    }
+
+    /**
+     * Writes a body paragraph as a scene break, without its direct formatting, or not at all if
+     * it is front matter from an earlier run
+     */
+    private void paragraph(List<XMLEvent> events, List<XMLEvent> out) {
+        StringBuilder text = new StringBuilder();
+        String style = null;
+        Deque<QName> open = new ArrayDeque<>();
+        for (XMLEvent event : events) {
+            if (event.isStartElement()) {
+                StartElement start = event.asStartElement();
+                if (isWord(start.getName(), "pStyle") && isWord(open.peek(), "pPr")) {
+                    Attribute val = start.getAttributeByName(new QName(RunProperties.WORDML_NS, "val"));
+                    style = val != null ? val.getValue() : null;
+                }
+                open.push(start.getName());
+            } else if (event.isEndElement()) {
+                open.pop();
+            } else if (event.isCharacters() && isWord(open.peek(), "t")) {
+                text.append(event.asCharacters().getData());
+            }
+        }
+        if (style != null && FRONT_MATTER_STYLES.contains(style)) {
+            return;
+        }
+        if (SCENE_BREAK.matcher(text).matches()) {
+            out.addAll(template.getSceneBreak());
+            return;
+        }
+
+        int skipped = 0;
+        for (XMLEvent event : events) {
+            if (skipped > 0) {
+                skipped += event.isStartElement() ? 1 : event.isEndElement() ? -1 : 0;
+                continue;
+            }
+            if (event.isStartElement()) {
+                QName name = event.asStartElement().getName();
+                if (RunProperties.WORDML_NS.equals(name.getNamespaceURI())
+                        && (isWord(open.peek(), "pPr") && PARAGRAPH_OVERRIDES.contains(name.getLocalPart())
+                        || isWord(open.peek(), "rPr") && RUN_OVERRIDES.contains(name.getLocalPart()))) {
+                    skipped = 1;
+                    continue;
+                }
+                open.push(name);
+            } else if (event.isEndElement()) {
+                open.pop();
+            }
+            out.add(event);
+        }
+    }
+
+    /**
+     * Reads an element whose start has just been read, up to and including its end
+     */
+    private static List<XMLEvent> read(StartElement start, XMLEventReader source) throws XMLStreamException {
+        List<XMLEvent> events = new ArrayList<>();
+        events.add(start);
+        for (int depth = 1; depth > 0; ) {
+            XMLEvent event = source.nextEvent();
+            depth += event.isStartElement() ? 1 : event.isEndElement() ? -1 : 0;
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * Surname / Title / , followed by the page number in the header
+     */
+    private String headerText() {
+        List<String> parts = new ArrayList<>();
+        if (!Strings.isBlank(authorMeta.author())) {
+            String[] names = authorMeta.author().trim().split("\\s+");
+            parts.add(names[names.length - 1]);
+        }
+        if (!Strings.isBlank(authorMeta.title())) {
+            parts.add(authorMeta.title().trim());
+        }
+        return parts.isEmpty() ? "" : String.join(" / ", parts) + " / ";
+    }
+
+    /**
+     * The contact block, word count, title and byline of the first page
+     */
+    private static List<XMLEvent> frontMatter(AuthorMeta meta) throws IOException {
+        StringBuilder xml = new StringBuilder("<w:body xmlns:w=\"" + RunProperties.WORDML_NS + "\">");
+        String author = Strings.isBlank(meta.author()) ? "" : meta.author().trim();
+        String words = wordCount(meta.words());
+        xml.append("<w:p><w:pPr><w:pStyle w:val=\"ShunnContact\"/></w:pPr>").append(run(author));
+        if (words != null) {
+            xml.append("<w:r><w:tab/></w:r>").append(run(words));
+        }
+        xml.append("</w:p>");
+
+        List<String> contact = new ArrayList<>();
+        if (!Strings.isBlank(meta.address())) {
+            contact.addAll(List.of(meta.address().trim().split("\\s*(\\R|;)\\s*")));
+        }
+        contact.add(meta.phone());
+        contact.add(meta.email());
+        for (String line : contact) {
+            if (!Strings.isBlank(line)) {
+                xml.append("<w:p><w:pPr><w:pStyle w:val=\"ShunnContact\"/></w:pPr>").append(run(line.trim())).append("</w:p>");
+            }
+        }
+        if (!Strings.isBlank(meta.title())) {
+            xml.append("<w:p><w:pPr><w:pStyle w:val=\"ShunnTitle\"/></w:pPr>").append(run(meta.title().trim())).append("</w:p>");
+        }
+        if (!author.isEmpty()) {
+            xml.append("<w:p><w:pPr><w:pStyle w:val=\"ShunnByline\"/></w:pPr>").append(run("by " + author)).append("</w:p>");
+        }
+        xml.append("</w:body>");
+
+        List<XMLEvent> events = ShunnTemplate.element(xml.toString());
+        return events.subList(1, events.size() - 1);
+    }
+
+    /**
+     * "about 2,000 words" for a number, the text itself otherwise, or null if there is none
+     */
+    static String wordCount(String words) {
+        if (Strings.isBlank(words)) {
+            return null;
+        }
+        String trimmed = words.trim();
+        if (WORD_COUNT.matcher(trimmed).matches()) {
+            try {
+                return String.format(Locale.US, "about %,d words", Long.parseLong(trimmed.replaceAll("\\D", "")));
+            } catch (NumberFormatException e) {
+                // Too long for a count; shown as typed
+            }
+        }
+        return trimmed;
+    }
+
+    private static String run(String text) {
+        return text.isEmpty() ? "" : "<w:r><w:t xml:space=\"preserve\">" + ShunnTemplate.escape(text) + "</w:t></w:r>";
+    }
+
+    private static String relationship(String id, String type, String target) {
+        return "<Relationship Id=\"" + id + "\" Type=\"" + RELATIONSHIP_TYPES + type + "\" Target=\"" + target + "\"/>";
+    }
+
+    private static String override(String partName, String contentType) {
+        return "<Override PartName=\"/" + ShunnTemplate.escape(partName) + "\" ContentType=\"" + contentType + "\"/>";
+    }
+
+    /**
+     * Copies a styles part with the template defaults, Normal and the styles of the template in
+     * place of the document's own; other styles are kept. The template's default character,
+     * table and numbering styles are only added if the document has no default of that type.
+     */
+    private OoxmlPackage.PartTransformer mergeStyles() {
+        Map<String, List<XMLEvent>> replacing = new LinkedHashMap<>();
+        Map<String, List<XMLEvent>> fallbacks = new LinkedHashMap<>();
+        for (List<XMLEvent> style : template.getStyleDefinitions()) {
+            StartElement start = style.get(0).asStartElement();
+            String type = wordAttribute(start, "type");
+            if (isDefault(start) && !"paragraph".equals(type)) {
+                fallbacks.put(type, style);
+            } else {
+                replacing.put(wordAttribute(start, "styleId"), style);
+            }
+        }
+        return (in, out) -> {
+            try {
+                XMLEventReader reader = XmlPartWriter.newReader(in);
+                XmlPartWriter writer = new XmlPartWriter(out);
+                Set<String> defaultTypes = new HashSet<>();
+                boolean docDefaultsWritten = false;
+                int depth = 0;
+                while (reader.hasNext()) {
+                    XMLEvent event = reader.nextEvent();
+                    if (event.isStartElement()) {
+                        StartElement start = event.asStartElement();
+                        if (depth == 1) {
+                            // w:docDefaults comes before every style
+                            if (!docDefaultsWritten) {
+                                writer.write(template.getDocDefaults());
+                                docDefaultsWritten = true;
+                            }
+                            if (isWord(start.getName(), "docDefaults")
+                                    || isWord(start.getName(), "style") && replacing.containsKey(wordAttribute(start, "styleId"))) {
+                                read(start, reader);
+                                continue;
+                            }
+                            if (isWord(start.getName(), "style") && isDefault(start)) {
+                                // Paragraphs without a style are Normal
+                                if ("paragraph".equals(wordAttribute(start, "type"))) {
+                                    start = withoutDefault(start);
+                                } else {
+                                    defaultTypes.add(wordAttribute(start, "type"));
+                                }
+                            }
+                        }
+                        if (depth++ == 0) {
+                            writer.write(start);
+                        } else if (writer.copyStart(start, reader)) {
+                            depth--;
+                        }
+                    } else {
+                        if (event.isEndElement() && --depth == 0) {
+                            if (!docDefaultsWritten) {
+                                writer.write(template.getDocDefaults());
+                            }
+                            for (Map.Entry<String, List<XMLEvent>> fallback : fallbacks.entrySet()) {
+                                if (!defaultTypes.contains(fallback.getKey())) {
+                                    writer.write(fallback.getValue());
+                                }
+                            }
+                            for (List<XMLEvent> style : replacing.values()) {
+                                writer.write(style);
+                            }
+                        }
+                        writer.write(event);
+                    }
+                }
+                reader.close();
+                writer.flush();
+            } catch (XMLStreamException e) {
+                throw new IOException("Failed to rewrite package part: " + e.getMessage(), e);
+            }
+        };
+    }
+
+    private static String wordAttribute(StartElement element, String name) {
+        Attribute attribute = element.getAttributeByName(new QName(RunProperties.WORDML_NS, name));
+        return attribute != null ? attribute.getValue() : null;
+    }
+
+    private static boolean isDefault(StartElement style) {
+        String value = wordAttribute(style, "default");
+        return "1".equals(value) || "true".equals(value) || "on".equals(value);
+    }
+
+    private static StartElement withoutDefault(StartElement style) {
+        List<Attribute> attributes = new ArrayList<>();
+        for (Iterator<Attribute> it = style.getAttributes(); it.hasNext(); ) {
+            Attribute attribute = it.next();
+            if (!isWord(attribute.getName(), "default")) {
+                attributes.add(attribute);
+            }
+        }
+        return EVENTS.createStartElement(style.getName(), attributes.iterator(), style.getNamespaces());
+    }
+
+    private static OoxmlPackage.PartTransformer replaceWith(byte[] content) {
+        return (in, out) -> out.write(content);
+    }
+
+    /**
+     * Copies a part, adding the children of {@code root} at the end of its root element
+     */
+    private static OoxmlPackage.PartTransformer appendToRoot(String root) throws IOException {
+        List<XMLEvent> element = ShunnTemplate.element(root);
+        List<XMLEvent> children = element.subList(1, element.size() - 1);
+        return (in, out) -> {
+            try {
+                XMLEventReader reader = XmlPartWriter.newReader(in);
+                XmlPartWriter writer = new XmlPartWriter(out);
+                int depth = 0;
+                while (reader.hasNext()) {
+                    XMLEvent event = reader.nextEvent();
+                    if (event.isStartElement()) {
+                        if (depth++ == 0) {
+                            writer.write(event);
+                        } else if (writer.copyStart(event.asStartElement(), reader)) {
+                            depth--;
+                        }
+                    } else {
+                        if (event.isEndElement() && --depth == 0) {
+                            writer.write(children);
+                        }
+                        writer.write(event);
+                    }
+                }
+                reader.close();
+                writer.flush();
+            } catch (XMLStreamException e) {
+                throw new IOException("Failed to rewrite package part: " + e.getMessage(), e);
+            }
+        };
+    }
+}
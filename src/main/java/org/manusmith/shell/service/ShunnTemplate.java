@@ -0,0 +1,231 @@
+package org.manusmith.shell.service;
+
+import org.manusmith.shell.dto.ManuscriptFont;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The standard manuscript template: styles, running header and page layout.
+ * <p>
+ * The template parts are read from {@code /templates/shunn} and compiled once per font, then
+ * shared by every conversion; a document only adds its own header text and contact block.
+ * Instances are immutable and thread-safe.
+ */
+final class ShunnTemplate {
+
+    static final String HEADER_RELATIONSHIP_ID = "rIdShunnHeader";
+
+    private static final String RESOURCE_DIRECTORY = "/templates/shunn/";
+    private static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final XMLEventFactory EVENTS = XMLEventFactory.newDefaultFactory();
+    private static final Map<ManuscriptFont, ShunnTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final byte[] styles;
+    private final List<XMLEvent> docDefaults;
+    private final List<List<XMLEvent>> styleDefinitions;
+    private final String header;
+    private final List<XMLEvent> section;
+    private final List<XMLEvent> sceneBreak;
+    private final List<XMLEvent> end;
+
+    private ShunnTemplate(ManuscriptFont font) throws IOException {
+        String stylesXml = resource("styles.xml").replace("${font}", escape(font.getFontName()));
+        this.styles = stylesXml.getBytes(StandardCharsets.UTF_8);
+        List<XMLEvent> docDefaults = List.of();
+        List<List<XMLEvent>> styleDefinitions = new ArrayList<>();
+        for (List<XMLEvent> child : children(element(stylesXml))) {
+            String name = child.get(0).asStartElement().getName().getLocalPart();
+            if ("docDefaults".equals(name)) {
+                docDefaults = child;
+            } else if ("style".equals(name)) {
+                styleDefinitions.add(child);
+            }
+        }
+        this.docDefaults = docDefaults;
+        this.styleDefinitions = List.copyOf(styleDefinitions);
+        this.header = resource("header.xml");
+        this.section = element(resource("section.xml").replace("${headerId}", HEADER_RELATIONSHIP_ID));
+        this.sceneBreak = paragraph("ShunnSceneBreak", "#");
+        this.end = paragraph("ShunnEnd", "END");
+    }
+
+    static ShunnTemplate forFont(ManuscriptFont font) throws IOException {
+        try {
+            return TEMPLATES.computeIfAbsent(font, key -> {
+                try {
+                    return new ShunnTemplate(key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * The complete styles part, for documents that have none
+     */
+    byte[] getStyles() {
+        return styles;
+    }
+
+    /**
+     * The {@code w:docDefaults} element of the styles part
+     */
+    List<XMLEvent> getDocDefaults() {
+        return docDefaults;
+    }
+
+    /**
+     * The {@code w:style} elements of the styles part, each as its events
+     */
+    List<List<XMLEvent>> getStyleDefinitions() {
+        return styleDefinitions;
+    }
+
+    /**
+     * The header part, showing {@code text} before the page number
+     */
+    byte[] getHeader(String text) {
+        return header.replace("${header}", escape(text)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The {@code w:sectPr} of the body, referring to the header as {@link #HEADER_RELATIONSHIP_ID}
+     */
+    List<XMLEvent> getSection() {
+        return section;
+    }
+
+    /**
+     * A centered {@code #} paragraph
+     */
+    List<XMLEvent> getSceneBreak() {
+        return sceneBreak;
+    }
+
+    /**
+     * The centered {@code END} paragraph that closes the manuscript
+     */
+    List<XMLEvent> getEnd() {
+        return end;
+    }
+
+    /**
+     * Builds a paragraph with one run of text
+     */
+    static List<XMLEvent> paragraph(String style, String text) throws IOException {
+        return element("<w:p xmlns:w=\"" + RunProperties.WORDML_NS + "\"><w:pPr><w:pStyle w:val=\"" + style
+                + "\"/></w:pPr><w:r><w:t xml:space=\"preserve\">" + escape(text) + "</w:t></w:r></w:p>");
+    }
+
+    /**
+     * Parses a single element into its events, without the document start and end. Indentation
+     * is dropped, and namespaces the root declares only for the fragment to parse are not
+     * repeated in the output, where the enclosing part declares them.
+     */
+    static List<XMLEvent> element(String xml) throws IOException {
+        List<XMLEvent> events = new ArrayList<>();
+        try {
+            XMLEventReader reader = XmlPartWriter.newReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+            XMLEvent previous = null;
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                boolean indentation = event.isCharacters() && event.asCharacters().isWhiteSpace()
+                        && !(previous != null && previous.isStartElement()
+                        && "t".equals(previous.asStartElement().getName().getLocalPart()));
+                if (event.isStartElement() && events.isEmpty()) {
+                    event = withoutNamespaces(event.asStartElement());
+                }
+                if (event.isStartElement() || event.isEndElement() || event.isCharacters() && !indentation) {
+                    events.add(event);
+                }
+                previous = event;
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid manuscript template: " + e.getMessage(), e);
+        }
+        return List.copyOf(events);
+    }
+
+    /**
+     * Splits the events of an element into those of its child elements
+     */
+    private static List<List<XMLEvent>> children(List<XMLEvent> element) {
+        List<List<XMLEvent>> children = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 1; i < element.size() - 1; i++) {
+            XMLEvent event = element.get(i);
+            if (event.isStartElement() && depth++ == 0) {
+                start = i;
+            } else if (event.isEndElement() && --depth == 0) {
+                children.add(List.copyOf(element.subList(start, i + 1)));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Drops the namespace declarations of an element, except for the relationships namespace,
+     * which the main part does not always declare
+     */
+    private static StartElement withoutNamespaces(StartElement element) {
+        List<Namespace> kept = new ArrayList<>();
+        for (Iterator<Namespace> it = element.getNamespaces(); it.hasNext(); ) {
+            Namespace namespace = it.next();
+            if (RELATIONSHIPS_NS.equals(namespace.getNamespaceURI())) {
+                kept.add(namespace);
+            }
+        }
+        return EVENTS.createStartElement(element.getName(), element.getAttributes(), kept.iterator());
+    }
+
+    /**
+     * Escapes text for XML content or attribute values, dropping characters XML cannot hold
+     */
+    static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> escaped.append("&amp;");
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '"' -> escaped.append("&quot;");
+                default -> {
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = ShunnTemplate.class.getResourceAsStream(RESOURCE_DIRECTORY + name)) {
+            if (in == null) {
+                throw new IOException("Manuscript template part not found: " + RESOURCE_DIRECTORY + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
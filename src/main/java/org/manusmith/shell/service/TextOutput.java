@@ -0,0 +1,66 @@
+package org.manusmith.shell.service;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes extracted document text, holding back the separator after a paragraph or table cell
+ * until more text follows, so that the end of a cell can turn it into a tab
+ */
+final class TextOutput {
+    private final Writer writer;
+    private char separator;
+    private long written;
+
+    TextOutput(Writer writer) {
+        this.writer = writer;
+    }
+
+    void write(char c) throws IOException {
+        flushSeparator();
+        writer.write(c);
+        written++;
+    }
+
+    void write(char[] text, int start, int length) throws IOException {
+        flushSeparator();
+        writer.write(text, start, length);
+        written += length;
+    }
+
+    void write(CharSequence text) throws IOException {
+        flushSeparator();
+        writer.append(text);
+        written += text.length();
+    }
+
+    /**
+     * Writes the separator held back, if any, and holds back {@code next}, or nothing for 0
+     */
+    void separate(char next) throws IOException {
+        flushSeparator();
+        separator = next;
+    }
+
+    /**
+     * Replaces the separator held back
+     */
+    void replaceSeparator(char next) {
+        separator = next;
+    }
+
+    /**
+     * Returns the number of characters written so far
+     */
+    long getWritten() {
+        return written;
+    }
+
+    private void flushSeparator() throws IOException {
+        if (separator != 0) {
+            writer.write(separator);
+            written++;
+            separator = 0;
+        }
+    }
+}
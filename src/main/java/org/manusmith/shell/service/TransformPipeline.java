@@ -0,0 +1,91 @@
+package org.manusmith.shell.service;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs an ordered list of transforms over a part in one pass.
+ * <p>
+ * The part is parsed once, its events flow through every transform in turn and the result is
+ * serialized once, so adding a transform does not add another inflate, parse and deflate cycle.
+ * The time spent parsing, in each transform and serializing is added up over all parts the
+ * pipeline transforms.
+ */
+public class TransformPipeline implements OoxmlPackage.PartTransformer {
+
+    static final String PARSE = "parse";
+    static final String SERIALIZE = "serialize";
+
+    // Passes every event on; used to time the parser separately from the first transform
+    private static final EventTransformer SOURCE = new EventTransformer(PARSE) {
+        @Override
+        protected boolean transform(StartElement element, QName parent, XMLEventReader source, List<XMLEvent> out) {
+            return false;
+        }
+    };
+
+    private final List<EventTransformer> transforms;
+    private final LongAdder[] nanos;
+
+    public TransformPipeline(List<? extends EventTransformer> transforms) {
+        this.transforms = List.copyOf(transforms);
+        this.nanos = new LongAdder[this.transforms.size() + 2];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = new LongAdder();
+        }
+    }
+
+    public List<EventTransformer> getTransforms() {
+        return transforms;
+    }
+
+    @Override
+    public void transform(InputStream in, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        try {
+            EventTransformer.Filter[] filters = new EventTransformer.Filter[transforms.size() + 1];
+            filters[0] = SOURCE.filter(XmlPartWriter.newReader(in));
+            for (int i = 0; i < transforms.size(); i++) {
+                filters[i + 1] = transforms.get(i).filter(filters[i]);
+            }
+            XmlPartWriter writer = new XmlPartWriter(out);
+            writer.copy(filters[filters.length - 1]);
+            filters[filters.length - 1].close();
+            writer.flush();
+
+            // Each filter's time includes the filters it reads from
+            long before = 0;
+            for (int i = 0; i < filters.length; i++) {
+                nanos[i].add(filters[i].getNanos() - before);
+                before = filters[i].getNanos();
+            }
+            nanos[filters.length].add(System.nanoTime() - start - before);
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to rewrite document part: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the nanoseconds spent so far parsing, in each transform by name, and serializing,
+     * in pipeline order
+     */
+    public Map<String, Long> getTimings() {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        timings.put(PARSE, nanos[0].sum());
+        for (int i = 0; i < transforms.size(); i++) {
+            timings.merge(transforms.get(i).getName(), nanos[i + 1].sum(), Long::sum);
+        }
+        timings.put(SERIALIZE, nanos[nanos.length - 1].sum());
+        return timings;
+    }
+}
@@ -0,0 +1,44 @@
+package org.manusmith.shell.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes each line of a text file as a paragraph of a DOCX document, while the text is read
+ */
+public class TxtToDocxConverter implements DocumentConverter {
+
+    private final DocxTextWriter docxWriter = new DocxTextWriter();
+
+    @Override
+    public String getSourceFormat() {
+        return "txt";
+    }
+
+    @Override
+    public String getTargetFormat() {
+        return "docx";
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    @Override
+    public MemoryUse getMemoryUse() {
+        return MemoryUse.CONSTANT;
+    }
+
+    @Override
+    public void convert(File inputFile, File outputFile) throws IOException {
+        // A reader over the stream replaces malformed input instead of failing on it
+        try (Reader reader = new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8)) {
+            docxWriter.writeText(reader, outputFile);
+        }
+    }
+}
@@ -0,0 +1,1199 @@
+package org.manusmith.shell.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Compiled typography engine used by {@link EngineBridge#cleanText(String, String)}.
+ * <p>
+ * Every profile (HU, DE, EN, Shunn) is compiled once into an immutable rule set. Cleaning is a
+ * single left-to-right scan that handles dashes, ellipses and quotes in one pass and writes into
+ * a pre-sized output buffer; Shunn scene breaks are rewritten in place on that buffer afterwards.
+ * The output is identical to the former chain of {@code String.replaceAll} calls:
+ * <pre>
+ *   (?&lt;=\w)-{2,}(?=\w)      -&gt; "—"
+ *   (?&lt;=\s)-{2,}(?=\s)      -&gt; " — "
+ *   \.\.\.                   -&gt; "…"
+ *   HU/DE/EN: quote pairs, then " — " -&gt; " – " (HU, DE) or " – " -&gt; "—" (EN)
+ *   Shunn:    (?m)^\s*\*\*\*\s*$ -&gt; " # ", then (?m)^\s*---\s*$ -&gt; " # "
+ * </pre>
+ * <p>
+ * Cleaning is linear in the length of the text for every input, unlike the regex chain, which
+ * backtracks through the whole remaining whitespace from every line start of a long run of blank
+ * lines. The scan reads each character once and never looks ahead: a quote opener is patched in
+ * O(1) when its closer arrives, and a dash or dot run is consumed in one step. The scene-break
+ * rewrite visits each whitespace run at most twice, once forward from the marker before it and
+ * once backward from the marker after it. {@code TypographyEngineScalingTest} checks this on
+ * adversarial inputs.
+ */
+public final class TypographyEngine {
+
+    /** Characters read per streaming segment */
+    static final int STREAM_CHUNK_SIZE = 64 * 1024;
+
+    /** Held-back characters (behind an unclosed quote) kept in memory before spilling to disk */
+    static final int STREAM_SPILL_THRESHOLD = 4 * STREAM_CHUNK_SIZE;
+
+    /** Smallest shard worth handing to another worker */
+    static final int MIN_SHARD_SIZE = 64 * 1024;
+
+    /** How spaced dashes are normalized after the quote rules have run. */
+    private enum DashRule {
+        NONE,
+        EM_TO_EN,   // " — " -> " – "
+        EN_TO_EM    // " – " -> "—"
+    }
+
+    /** The individual typography rules, as reported by {@link RuleStats} */
+    public enum Rule {
+        EM_DASH("em_dash"),           // word--word -> word—word
+        SPACED_DASH("spaced_dash"),   // " -- " -> " — "
+        DASH_STYLE("dash_style"),     // the profile's spaced-dash normalization
+        ELLIPSIS("ellipsis"),         // ... -> …
+        OUTER_QUOTES("outer_quotes"), // "..." pairs
+        INNER_QUOTES("inner_quotes"), // '...' pairs
+        SCENE_BREAK("scene_break");   // *** and --- lines -> " # "
+
+        private final String tag;
+
+        Rule(String tag) {
+            this.tag = tag;
+        }
+
+        /** Metric tag value of the rule */
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private static final int RULE_COUNT = Rule.values().length;
+
+    private static final TypographyEngine GENERIC =
+            new TypographyEngine("generic", false, '\0', '\0', '\0', '\0', DashRule.NONE, false);
+
+    private static final Map<String, TypographyEngine> PROFILES = Map.of(
+            // Hungarian: „low-high” quotes, »guillemets« for inner, spaced en-dash for thoughts
+            "HU", new TypographyEngine("HU", true, '„', '”', '»', '«', DashRule.EM_TO_EN, false),
+            // German: „low-high“ quotes, ‚low-high‘ for inner, spaced en-dash for thoughts
+            "DE", new TypographyEngine("DE", true, '„', '“', '‚', '‘', DashRule.EM_TO_EN, false),
+            // English: “high-high” quotes, ‘high-high’ for inner, unspaced em-dash for breaks
+            "EN", new TypographyEngine("EN", true, '“', '”', '‘', '’', DashRule.EN_TO_EM, false),
+            // Shunn manuscript format (text-level): standardize scene breaks
+            "Shunn", new TypographyEngine("Shunn", false, '\0', '\0', '\0', '\0', DashRule.NONE, true));
+
+    private final String name;
+    private final boolean quotes;
+    private final char doubleOpen;
+    private final char doubleClose;
+    private final char singleOpen;
+    private final char singleClose;
+    private final DashRule dashRule;
+    private final boolean sceneBreaks;
+
+    private TypographyEngine(String name, boolean quotes, char doubleOpen, char doubleClose,
+                             char singleOpen, char singleClose, DashRule dashRule, boolean sceneBreaks) {
+        this.name = name;
+        this.quotes = quotes;
+        this.doubleOpen = doubleOpen;
+        this.doubleClose = doubleClose;
+        this.singleOpen = singleOpen;
+        this.singleClose = singleClose;
+        this.dashRule = dashRule;
+        this.sceneBreaks = sceneBreaks;
+    }
+
+    /**
+     * Returns the compiled engine for a profile. Unknown profiles get an engine that applies only
+     * the general dash and ellipsis fixes.
+     */
+    public static TypographyEngine forProfile(String profile) {
+        TypographyEngine engine = profile != null ? PROFILES.get(profile) : null;
+        return engine != null ? engine : GENERIC;
+    }
+
+    /**
+     * Checks whether a profile name maps to a dedicated rule set
+     */
+    public static boolean isKnownProfile(String profile) {
+        return profile != null && PROFILES.containsKey(profile);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Checks whether the rule is part of this profile
+     */
+    public boolean hasRule(Rule rule) {
+        switch (rule) {
+            case DASH_STYLE:
+                return dashRule != DashRule.NONE;
+            case OUTER_QUOTES: case INNER_QUOTES:
+                return quotes;
+            case SCENE_BREAK:
+                return sceneBreaks;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Cleans the given text according to this profile. Text no rule applies to is returned as the
+     * same instance without allocating.
+     *
+     * @param text The text to clean, never null
+     * @return The cleaned text
+     */
+    public String clean(String text) {
+        return clean(text, (RuleStats) null);
+    }
+
+    /**
+     * Cleans the given text according to this profile and adds per-rule hits and timings to
+     * {@code stats}.
+     *
+     * @param text The text to clean, never null
+     * @param stats Receives the rule statistics, or null
+     * @return The cleaned text
+     */
+    public String clean(String text, RuleStats stats) {
+        int n = text.length();
+        if (n == 0 || isClean(text)) {
+            return text;
+        }
+
+        Output out = new Output(n + (n >> 4) + 16, dashRule);
+        out.timed = stats != null;
+        scan(text, 0, n, '\0', '\0', out);
+        rewriteSceneBreaks(out, true);
+        if (stats != null) {
+            stats.add(out);
+        }
+        return new String(out.buf, 0, out.len);
+    }
+
+    /**
+     * Pre-scan that checks whether no rule of this profile can fire on the text, in which case
+     * cleaning would return it unchanged. The check is conservative: it looks for the few
+     * characters every rule needs ({@code - . " ' * — –}), so nearly all plain text is decided by
+     * one range comparison per character, and it stops at the first place a rule might apply.
+     *
+     * @param text The text to check, never null
+     * @return true if cleaning cannot change the text
+     */
+    public boolean isClean(String text) {
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            // '"' (0x22) to '.' (0x2E) covers every ASCII trigger; '–' and '—' are adjacent
+            if ((char) (c - '"') > '.' - '"' && (char) (c - '–') > '—' - '–') {
+                continue;
+            }
+            switch (c) {
+                case '-':
+                    if (i + 1 < n && text.charAt(i + 1) == '-') {
+                        return false;
+                    }
+                    break;
+                case '.':
+                    if (i + 2 < n && text.charAt(i + 1) == '.' && text.charAt(i + 2) == '.') {
+                        return false;
+                    }
+                    break;
+                case '"': case '\'':
+                    // Only a quote after a space can open a pair
+                    if (quotes && i > 0 && text.charAt(i - 1) == ' ') {
+                        return false;
+                    }
+                    break;
+                case '*':
+                    if (sceneBreaks && i + 2 < n && text.charAt(i + 1) == '*' && text.charAt(i + 2) == '*') {
+                        return false;
+                    }
+                    break;
+                case '—':
+                    if (dashRule == DashRule.EM_TO_EN) {
+                        return false;
+                    }
+                    break;
+                case '–':
+                    if (dashRule == DashRule.EN_TO_EM) {
+                        return false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cleans a character stream with bounded memory, producing exactly what {@link #clean(String)}
+     * would produce for the whole text.
+     * <p>
+     * Input is processed in segments of about {@link #STREAM_CHUNK_SIZE} characters. A segment
+     * always ends right after a character that no dash, ellipsis or scene-break rule can touch, so
+     * those rules never straddle a segment boundary. Quote pairs can, so output from an unclosed
+     * opener onwards is held back until its closing quote (or the end of input) decides its glyph;
+     * if that held text grows beyond {@link #STREAM_SPILL_THRESHOLD} characters it is moved to a
+     * temporary file in {@code spillDirectory}.
+     *
+     * @param reader The source text; not closed by this method
+     * @param writer The destination; not closed by this method
+     * @param spillDirectory Directory for temporary spill files, or null for the system default
+     * @throws IOException If reading, writing or spilling fails
+     */
+    public void clean(Reader reader, Writer writer, Path spillDirectory) throws IOException {
+        clean(reader, writer, spillDirectory, null);
+    }
+
+    /**
+     * Cleans a character stream like {@link #clean(Reader, Writer, Path)} and adds per-rule hits
+     * and timings to {@code stats}.
+     *
+     * @param stats Receives the rule statistics, or null
+     */
+    public void clean(Reader reader, Writer writer, Path spillDirectory, RuleStats stats) throws IOException {
+        char[] window = new char[STREAM_CHUNK_SIZE];
+        CharBuffer input = CharBuffer.wrap(window);
+        int filled = 0;
+        boolean eof = false;
+        boolean atStart = true;
+        char before = '\0';
+
+        Output out = new Output(STREAM_CHUNK_SIZE + (STREAM_CHUNK_SIZE >> 1) + 16, dashRule);
+        out.timed = stats != null;
+        try (StreamSink sink = new StreamSink(writer, spillDirectory)) {
+            while (true) {
+                while (!eof && filled < window.length) {
+                    int read = reader.read(window, filled, window.length - filled);
+                    if (read < 0) {
+                        eof = true;
+                    } else {
+                        filled += read;
+                    }
+                }
+                if (filled == 0) {
+                    break;
+                }
+
+                int cut = eof ? filled : lastSafeCut(window, filled);
+                if (cut == 0) {
+                    // No safe boundary in a full window: only possible for text without letters
+                    window = Arrays.copyOf(window, window.length * 2);
+                    input = CharBuffer.wrap(window);
+                    continue;
+                }
+
+                scan(input, 0, cut, before, cut < filled ? window[cut] : '\0', out);
+                rewriteSceneBreaks(out, atStart);
+                before = window[cut - 1];
+                atStart = false;
+
+                System.arraycopy(window, cut, window, 0, filled - cut);
+                filled -= cut;
+                sink.drain(out, eof && filled == 0);
+            }
+            sink.drain(out, true);
+            if (stats != null) {
+                stats.add(out);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Cleans a long text on a fork/join pool, producing exactly what {@link #clean(String)}
+     * produces.
+     * <p>
+     * The text is split into shards at the end of a paragraph's last word, right after a
+     * {@linkplain #isSafeBoundary safe boundary} character, so no dash, ellipsis or scene-break
+     * match crosses a shard. Quote pairs may span paragraphs ({@code [^"]*} matches newlines), so
+     * shards only record where their straight quotes are; a sequential pass over those positions
+     * then decides the glyphs before the shards are stitched together in order.
+     *
+     * @param text The text to clean, never null
+     * @param pool The pool the shards are cleaned on
+     * @return The cleaned text
+     */
+    public String clean(String text, ForkJoinPool pool) {
+        return clean(text, pool, null);
+    }
+
+    /**
+     * Cleans a long text on a fork/join pool like {@link #clean(String, ForkJoinPool)} and adds
+     * per-rule hits and timings (summed over all shards) to {@code stats}.
+     *
+     * @param stats Receives the rule statistics, or null
+     */
+    public String clean(String text, ForkJoinPool pool, RuleStats stats) {
+        int n = text.length();
+        int shardSize = Math.max(MIN_SHARD_SIZE, n / (pool.getParallelism() * 4));
+        int[] cuts = shardCuts(text, shardSize);
+        if (cuts.length <= 2) {
+            return clean(text, stats);
+        }
+
+        Output[] shards = new Output[cuts.length - 1];
+        pool.invoke(new ShardTask(text, cuts, shards, 0, shards.length, stats != null));
+        if (stats != null) {
+            for (Output shard : shards) {
+                stats.add(shard);
+            }
+        }
+        return stitch(shards, stats);
+    }
+
+    /**
+     * Opens an incremental cleaning session for repeatedly cleaning successive versions of one
+     * text, such as a document being edited.
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * Shard boundaries: 0, the cut positions in increasing order, and the text length.
+     */
+    private static int[] shardCuts(String text, int shardSize) {
+        int n = text.length();
+        int[] cuts = new int[n / (shardSize / 2) + 2];
+        int count = 1;
+        int previous = 0;
+        while (n - previous >= 2 * shardSize) {
+            int cut = paragraphCut(text, previous, previous + shardSize);
+            if (cut < 0) {
+                break;
+            }
+            cuts[count++] = cut;
+            previous = cut;
+        }
+        cuts[count++] = n;
+        return Arrays.copyOf(cuts, count);
+    }
+
+    /**
+     * First paragraph end at or after {@code target} whose last word ends within a short distance,
+     * returned as the position right after that word; -1 if there is none.
+     */
+    private static int paragraphCut(String text, int previous, int target) {
+        int newline = text.indexOf('\n', target);
+        while (newline >= 0) {
+            int limit = Math.max(previous + 1, newline - 4096);
+            for (int k = newline; k >= limit; k--) {
+                if (isSafeBoundary(text.charAt(k - 1))) {
+                    return k;
+                }
+            }
+            newline = text.indexOf('\n', newline + 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Concatenates cleaned shards in order and decides their quote glyphs. The shards themselves
+     * are left untouched, so they can be stitched again in another combination.
+     */
+    private String stitch(Output[] shards, RuleStats stats) {
+        int[] offsets = new int[shards.length];
+        int total = 0;
+        for (int i = 0; i < shards.length; i++) {
+            offsets[i] = total;
+            total += shards[i].len;
+        }
+        char[] result = new char[total];
+        for (int i = 0; i < shards.length; i++) {
+            System.arraycopy(shards[i].buf, 0, result, offsets[i], shards[i].len);
+        }
+        if (quotes) {
+            resolveQuotes(shards, offsets, result, stats);
+        }
+        return new String(result);
+    }
+
+    /**
+     * Runs the quote state machine over the recorded quotes of all shards in text order and
+     * writes the glyphs of every matched pair into {@code result}, where shard {@code i} starts
+     * at {@code offsets[i]}; unmatched openers stay literal quotes. Pairs are counted in
+     * {@code stats} if it is not null.
+     */
+    private void resolveQuotes(Output[] shards, int[] offsets, char[] result, RuleStats stats) {
+        int doubleAt = -1;
+        int singleAt = -1;
+
+        for (int i = 0; i < shards.length; i++) {
+            QuoteLog log = shards[i].quoteLog;
+            for (int k = 0; k < log.count; k++) {
+                int at = offsets[i] + log.positions[k];
+                if (log.isSingle(k)) {
+                    if (singleAt >= 0) {
+                        result[singleAt] = singleOpen;
+                        result[at] = singleClose;
+                        singleAt = -1;
+                        if (stats != null) {
+                            stats.hits[Rule.INNER_QUOTES.ordinal()]++;
+                        }
+                    } else if (log.isOpener(k)) {
+                        singleAt = at;
+                    }
+                } else {
+                    if (doubleAt >= 0) {
+                        result[doubleAt] = doubleOpen;
+                        result[at] = doubleClose;
+                        doubleAt = -1;
+                        if (stats != null) {
+                            stats.hits[Rule.OUTER_QUOTES.ordinal()]++;
+                        }
+                    } else if (log.isOpener(k)) {
+                        doubleAt = at;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Boundaries of every paragraph: 0, the cut after the last word of each paragraph, and the
+     * text length.
+     */
+    private static int[] paragraphCuts(String text) {
+        int n = text.length();
+        int[] cuts = new int[16];
+        int count = 1;
+        int previous = 0;
+        int cut;
+        while ((cut = paragraphCut(text, previous, previous)) >= 0) {
+            if (count + 1 >= cuts.length) {
+                cuts = Arrays.copyOf(cuts, cuts.length * 2);
+            }
+            cuts[count++] = cut;
+            previous = cut;
+        }
+        cuts[count++] = n;
+        return Arrays.copyOf(cuts, count);
+    }
+
+    /**
+     * Cleans one shard without deciding quote glyphs
+     */
+    private Output cleanShard(String text, int from, int to, boolean timed) {
+        int length = to - from;
+        Output out = new Output(length + (length >> 4) + 16, dashRule);
+        out.timed = timed;
+        if (quotes) {
+            out.quoteLog = new QuoteLog();
+        }
+        scan(text, from, to, from > 0 ? text.charAt(from - 1) : '\0', to < text.length() ? text.charAt(to) : '\0', out);
+        rewriteSceneBreaks(out, from == 0);
+        return out;
+    }
+
+    /**
+     * Splits the shard range in halves until single shards remain
+     */
+    private final class ShardTask extends RecursiveAction {
+        private final String text;
+        private final int[] cuts;
+        private final Output[] shards;
+        private final int lo;
+        private final int hi;
+        private final boolean timed;
+
+        ShardTask(String text, int[] cuts, Output[] shards, int lo, int hi, boolean timed) {
+            this.text = text;
+            this.cuts = cuts;
+            this.shards = shards;
+            this.lo = lo;
+            this.hi = hi;
+            this.timed = timed;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                shards[lo] = cleanShard(text, cuts[lo], cuts[lo + 1], timed);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new ShardTask(text, cuts, shards, lo, mid, timed),
+                    new ShardTask(text, cuts, shards, mid, hi, timed));
+        }
+    }
+
+    /**
+     * Incremental cleaning of successive versions of one text. Cleaned paragraphs are kept by a
+     * hash of their content and surroundings, so after an edit only the paragraphs that changed are
+     * cleaned again; the rest are spliced in from the previous run. Quote glyphs are decided over
+     * the whole text on every update, since a pair may span paragraphs.
+     * <p>
+     * The result is always identical to {@link #clean(String)}. Sessions are not thread-safe.
+     */
+    public final class Session {
+        private Map<Long, Output> paragraphs = new HashMap<>();
+        private int lastCleaned;
+
+        private Session() {
+        }
+
+        /**
+         * Cleans the current version of the text.
+         *
+         * @param text The full text, never null
+         * @return The cleaned text
+         * @throws CancellationException If the calling thread is interrupted during the update
+         */
+        public String update(String text) {
+            if (text.isEmpty()) {
+                paragraphs = new HashMap<>();
+                lastCleaned = 0;
+                return text;
+            }
+
+            int[] cuts = paragraphCuts(text);
+            Output[] outputs = new Output[cuts.length - 1];
+            Map<Long, Output> current = new HashMap<>(outputs.length * 2);
+            int cleaned = 0;
+            for (int i = 0; i < outputs.length; i++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // Superseded by a newer version; the previous paragraphs stay intact
+                    throw new CancellationException("Cleaning session update interrupted");
+                }
+                long key = paragraphKey(text, cuts[i], cuts[i + 1]);
+                Output out = current.get(key);
+                if (out == null) {
+                    out = paragraphs.get(key);
+                    if (out == null) {
+                        out = cleanShard(text, cuts[i], cuts[i + 1], false);
+                        cleaned++;
+                    }
+                    current.put(key, out);
+                }
+                outputs[i] = out;
+            }
+
+            // Only paragraphs of the latest version are kept
+            paragraphs = current;
+            lastCleaned = cleaned;
+            return stitch(outputs, null);
+        }
+
+        /**
+         * Number of paragraphs the last {@link #update} actually had to clean
+         */
+        public int getLastCleanedParagraphs() {
+            return lastCleaned;
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of {@code text[from, to)} together with everything else that influences
+     * how the range is cleaned: the characters around it and whether it starts the text.
+     */
+    private static long paragraphKey(String text, int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ (from > 0 ? text.charAt(from - 1) : 0x10000)) * 0x100000001b3L;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ (to < text.length() ? text.charAt(to) : 0x10000)) * 0x100000001b3L;
+        return hash;
+    }
+
+    /**
+     * Finds the last position in the window that directly follows a character no rule other than
+     * the quote rules can touch, or 0 if there is none.
+     */
+    private static int lastSafeCut(char[] window, int filled) {
+        for (int k = filled; k > 0; k--) {
+            if (isSafeBoundary(window[k - 1])) {
+                return k;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * A character after which text can be split: it is not whitespace, a line terminator, a hyphen,
+     * a dot, an asterisk or a dash glyph, so no dash, ellipsis or scene-break match can include it.
+     */
+    static boolean isSafeBoundary(char c) {
+        switch (c) {
+            case '-': case '.': case '*': case '—': case '–':
+                return false;
+            default:
+                return !isSpace(c) && !isLineTerminator(c);
+        }
+    }
+
+    /**
+     * The single left-to-right pass over dashes, ellipses and quotes for {@code s[from, to)}.
+     * {@code before} and {@code after} are the characters around the range ('\0' at the text edges).
+     * <p>
+     * A quote opener (a straight quote preceded by a space) is only valid if another quote of the
+     * same kind follows it somewhere. Instead of looking ahead, the opener is written literally and
+     * its output position remembered; the next quote of that kind patches it and closes the pair.
+     */
+    private void scan(CharSequence s, int from, int to, char before, char after, Output out) {
+        long start = out.timed ? System.nanoTime() : 0L;
+        int i = from;
+        while (i < to) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '-': {
+                    int j = i + 1;
+                    while (j < to && s.charAt(j) == '-') {
+                        j++;
+                    }
+                    emitHyphenRun(out, j - i, i > from ? s.charAt(i - 1) : before, j < to ? s.charAt(j) : after);
+                    i = j;
+                    continue;
+                }
+                case '.': {
+                    int j = i + 1;
+                    while (j < to && s.charAt(j) == '.') {
+                        j++;
+                    }
+                    emitDotRun(out, j - i);
+                    i = j;
+                    continue;
+                }
+                case '"':
+                    if (!quotes) {
+                        out.append(c);
+                    } else if (out.quoteLog != null) {
+                        out.quoteLog.add(out.len, false, (i > from ? s.charAt(i - 1) : before) == ' ');
+                        out.append(c);
+                    } else if (out.doublePending >= 0) {
+                        out.resolve(out.doublePending, doubleOpen);
+                        out.append(doubleClose);
+                        out.doublePending = -1;
+                        out.hits[Rule.OUTER_QUOTES.ordinal()]++;
+                    } else {
+                        if ((i > from ? s.charAt(i - 1) : before) == ' ') {
+                            out.doublePending = out.position();
+                        }
+                        out.append(c);
+                    }
+                    break;
+                case '\'':
+                    if (!quotes) {
+                        out.append(c);
+                    } else if (out.quoteLog != null) {
+                        out.quoteLog.add(out.len, true, (i > from ? s.charAt(i - 1) : before) == ' ');
+                        out.append(c);
+                    } else if (out.singlePending >= 0) {
+                        out.resolve(out.singlePending, singleOpen);
+                        out.append(singleClose);
+                        out.singlePending = -1;
+                        out.hits[Rule.INNER_QUOTES.ordinal()]++;
+                    } else {
+                        if ((i > from ? s.charAt(i - 1) : before) == ' ') {
+                            out.singlePending = out.position();
+                        }
+                        out.append(c);
+                    }
+                    break;
+                case ' ':
+                    out.space();
+                    break;
+                default:
+                    out.append(c);
+                    break;
+            }
+            i++;
+        }
+        if (out.timed) {
+            out.scanNanos += System.nanoTime() - start;
+        }
+    }
+
+    private static void emitHyphenRun(Output out, int runLength, char before, char after) {
+        if (runLength >= 2 && isWord(before) && isWord(after)) {
+            out.append('—');
+            out.hits[Rule.EM_DASH.ordinal()]++;
+        } else if (runLength >= 2 && isSpace(before) && isSpace(after)) {
+            out.space();
+            out.append('—');
+            out.space();
+            out.hits[Rule.SPACED_DASH.ordinal()]++;
+        } else {
+            for (int k = 0; k < runLength; k++) {
+                out.append('-');
+            }
+        }
+    }
+
+    private static void emitDotRun(Output out, int runLength) {
+        out.hits[Rule.ELLIPSIS.ordinal()] += runLength / 3;
+        for (int k = runLength / 3; k > 0; k--) {
+            out.append('…');
+        }
+        for (int k = runLength % 3; k > 0; k--) {
+            out.append('.');
+        }
+    }
+
+    /**
+     * Applies the Shunn scene-break rules to everything written to {@code out}, if this profile
+     * has them.
+     */
+    private void rewriteSceneBreaks(Output out, boolean atStart) {
+        if (!sceneBreaks) {
+            return;
+        }
+        long start = out.timed ? System.nanoTime() : 0L;
+        out.len = rewriteSceneBreaks(out.buf, out.len, '*', atStart, out.hits);
+        out.len = rewriteSceneBreaks(out.buf, out.len, '-', atStart, out.hits);
+        if (out.timed) {
+            out.sceneBreakNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Rewrites {@code (?m)^\s*MMM\s*$} to {@code " # "} in place, where M is the marker character.
+     * Replacements never grow the text, so the write index never overtakes the read index.
+     *
+     * @param atStart Whether the buffer begins at the start of the text; otherwise it must begin
+     *                right after a {@linkplain #isSafeBoundary safe boundary} character
+     * @param hits Per-rule hit counters; the scene-break counter is incremented per replacement
+     * @return The new length of the buffer content
+     */
+    static int rewriteSceneBreaks(char[] s, int n, char marker, boolean atStart, int[] hits) {
+        int write = 0;
+        int from = 0;           // start of the next search, as in Matcher.find()
+        char beforeFrom = '\0'; // original character at from - 1 (may already be overwritten)
+        boolean fromAtStart = atStart;
+
+        int q = 0;
+        while (q + 3 <= n) {
+            if (s[q] != marker || s[q + 1] != marker || s[q + 2] != marker) {
+                q++;
+                continue;
+            }
+
+            // Leftmost line start in the whitespace run directly before the marker
+            int runStart = q;
+            while (runStart > from && isSpace(s[runStart - 1])) {
+                runStart--;
+            }
+            int start = -1;
+            for (int k = runStart; k <= q; k++) {
+                boolean textStart = k == from && fromAtStart;
+                if (isLineStart(s, n, k, textStart, k == from ? beforeFrom : s[k - 1])) {
+                    start = k;
+                    break;
+                }
+            }
+            if (start < 0) {
+                q++;
+                continue;
+            }
+
+            // Greedy trailing whitespace, backing off to the last line end
+            int runEnd = q + 3;
+            while (runEnd < n && isSpace(s[runEnd])) {
+                runEnd++;
+            }
+            int end = -1;
+            for (int k = runEnd; k >= q + 3; k--) {
+                if (isLineEnd(s, n, k)) {
+                    end = k;
+                    break;
+                }
+            }
+            if (end < 0) {
+                q++;
+                continue;
+            }
+
+            if (write != from) {
+                System.arraycopy(s, from, s, write, start - from);
+            }
+            write += start - from;
+            beforeFrom = s[end - 1];
+            fromAtStart = false;
+            s[write++] = ' ';
+            s[write++] = '#';
+            s[write++] = ' ';
+            hits[Rule.SCENE_BREAK.ordinal()]++;
+            from = end;
+            q = end;
+        }
+
+        if (write != from) {
+            System.arraycopy(s, from, s, write, n - from);
+        }
+        return write + (n - from);
+    }
+
+    /**
+     * Multiline {@code ^}: start of input, or after a line terminator (but not between \r and \n),
+     * and never at the end of input.
+     */
+    private static boolean isLineStart(char[] s, int n, int k, boolean textStart, char previous) {
+        if (k == n) {
+            return false;
+        }
+        if (textStart) {
+            return true;
+        }
+        if (!isLineTerminator(previous)) {
+            return false;
+        }
+        return !(previous == '\r' && s[k] == '\n');
+    }
+
+    /**
+     * Multiline {@code $}: end of input, or before a line terminator (but not between \r and \n).
+     */
+    private static boolean isLineEnd(char[] s, int n, int k) {
+        if (k == n) {
+            return true;
+        }
+        char c = s[k];
+        if (c == '\n') {
+            return k == 0 || s[k - 1] != '\r';
+        }
+        return c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /** Regex {@code \w} without UNICODE_CHARACTER_CLASS */
+    static boolean isWord(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /** Regex {@code \s} without UNICODE_CHARACTER_CLASS */
+    static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Growable output buffer that also applies the profile's spaced-dash rule as spaces are
+     * written, since a spaced dash is only recognizable once its trailing space arrives.
+     * <p>
+     * Positions are counted from the start of the held output: characters already moved to a
+     * spill file ({@link #spilled}) followed by the buffer.
+     */
+    private static final class Output {
+        char[] buf;
+        int len;
+        private final DashRule dashRule;
+        private int lastDashMatchEnd;
+
+        long doublePending = -1;
+        long singlePending = -1;
+        long spilled;
+        Spill spill;
+
+        /** Set when quote glyphs are decided later, across shards */
+        QuoteLog quoteLog;
+
+        /** Replacements per {@link Rule}, by ordinal */
+        final int[] hits = new int[RULE_COUNT];
+        /** Whether the passes over this output are timed */
+        boolean timed;
+        long scanNanos;
+        long sceneBreakNanos;
+
+        Output(int capacity, DashRule dashRule) {
+            this.buf = new char[capacity];
+            this.dashRule = dashRule;
+        }
+
+        long position() {
+            return spilled + len;
+        }
+
+        /**
+         * Position of the first character that may still change: the earliest unclosed quote
+         * opener, or the end of the output if there is none.
+         */
+        long pendingFrom() {
+            long from = position();
+            if (doublePending >= 0) {
+                from = Math.min(from, doublePending);
+            }
+            if (singlePending >= 0) {
+                from = Math.min(from, singlePending);
+            }
+            return from;
+        }
+
+        void resolve(long position, char glyph) {
+            if (position >= spilled) {
+                buf[(int) (position - spilled)] = glyph;
+            } else {
+                spill.patch(position, glyph);
+            }
+        }
+
+        /**
+         * Removes the first {@code count} buffered characters, which the caller has already
+         * moved elsewhere. Positions are left unchanged.
+         */
+        void discard(int count) {
+            System.arraycopy(buf, count, buf, 0, len - count);
+            len -= count;
+            lastDashMatchEnd = Math.max(0, lastDashMatchEnd - count);
+        }
+
+        /**
+         * Shifts remembered positions after {@code count} characters left the held output.
+         */
+        void forget(long count) {
+            if (doublePending >= 0) {
+                doublePending -= count;
+            }
+            if (singlePending >= 0) {
+                singlePending -= count;
+            }
+        }
+
+        void append(char c) {
+            if (len == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length + (buf.length >> 1) + 16);
+            }
+            buf[len++] = c;
+        }
+
+        void space() {
+            if (dashRule != DashRule.NONE && len - 2 >= lastDashMatchEnd && buf[len - 2] == ' ') {
+                if (dashRule == DashRule.EM_TO_EN && buf[len - 1] == '—') {
+                    buf[len - 1] = '–';
+                    append(' ');
+                    lastDashMatchEnd = len;
+                    hits[Rule.DASH_STYLE.ordinal()]++;
+                    return;
+                }
+                if (dashRule == DashRule.EN_TO_EM && buf[len - 1] == '–') {
+                    len -= 2;
+                    append('—');
+                    lastDashMatchEnd = len;
+                    hits[Rule.DASH_STYLE.ordinal()]++;
+                    return;
+                }
+            }
+            append(' ');
+        }
+    }
+
+    /**
+     * Per-rule replacement counts and pass timings collected while cleaning. Dash, ellipsis and
+     * quote rules all run in the same single scan, so their time is reported together as the scan
+     * time; the scene-break rules have their own pass. Not thread-safe.
+     */
+    public static final class RuleStats {
+        final long[] hits = new long[RULE_COUNT];
+        private long scanNanos;
+        private long sceneBreakNanos;
+
+        /** Number of replacements the rule made */
+        public long getHits(Rule rule) {
+            return hits[rule.ordinal()];
+        }
+
+        /** Time spent in the scan that applies the dash, ellipsis and quote rules */
+        public long getScanNanos() {
+            return scanNanos;
+        }
+
+        /** Time spent in the scene-break pass */
+        public long getSceneBreakNanos() {
+            return sceneBreakNanos;
+        }
+
+        void add(Output out) {
+            for (int k = 0; k < RULE_COUNT; k++) {
+                hits[k] += out.hits[k];
+            }
+            scanNanos += out.scanNanos;
+            sceneBreakNanos += out.sceneBreakNanos;
+        }
+
+        void add(RuleStats other) {
+            for (int k = 0; k < RULE_COUNT; k++) {
+                hits[k] += other.hits[k];
+            }
+            scanNanos += other.scanNanos;
+            sceneBreakNanos += other.sceneBreakNanos;
+        }
+    }
+
+    /**
+     * Output positions of the straight quotes in a shard, with their kind and whether they directly
+     * follow a space (and so may open a pair).
+     */
+    private static final class QuoteLog {
+        private static final int SINGLE = 1;
+        private static final int OPENER = 2;
+
+        int[] positions = new int[16];
+        byte[] flags = new byte[16];
+        int count;
+
+        void add(int position, boolean single, boolean opener) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+                flags = Arrays.copyOf(flags, count * 2);
+            }
+            positions[count] = position;
+            flags[count] = (byte) ((single ? SINGLE : 0) | (opener ? OPENER : 0));
+            count++;
+        }
+
+        boolean isSingle(int index) {
+            return (flags[index] & SINGLE) != 0;
+        }
+
+        boolean isOpener(int index) {
+            return (flags[index] & OPENER) != 0;
+        }
+    }
+
+    /**
+     * Moves finished output from an {@link Output} to the target writer, holding back everything
+     * from the earliest unclosed quote opener onwards.
+     */
+    private static final class StreamSink implements Closeable {
+        private final Writer target;
+        private final Path spillDirectory;
+        private Spill spill;
+
+        StreamSink(Writer target, Path spillDirectory) {
+            this.target = target;
+            this.spillDirectory = spillDirectory;
+        }
+
+        /**
+         * @param end Whether the input is exhausted; unclosed openers then stay literal quotes
+         */
+        void drain(Output out, boolean end) throws IOException {
+            if (end) {
+                out.doublePending = -1;
+                out.singlePending = -1;
+            }
+
+            // Everything before the earliest unclosed opener is final
+            if (out.spilled > 0 && out.pendingFrom() >= out.spilled) {
+                spill.transferTo(target);
+                out.forget(out.spilled);
+                out.spilled = 0;
+                out.spill = null;
+            }
+            if (out.spilled == 0) {
+                int done = (int) out.pendingFrom();
+                target.write(out.buf, 0, done);
+                out.discard(done);
+                out.forget(done);
+            }
+
+            // An unclosed opener is holding back too much text: move all but the last two
+            // characters (still needed by the spaced-dash rule) to disk
+            if (out.len > STREAM_SPILL_THRESHOLD) {
+                if (spill == null) {
+                    spill = new Spill(spillDirectory);
+                }
+                int count = out.len - 2;
+                spill.append(out.buf, 0, count);
+                out.discard(count);
+                out.spilled += count;
+                out.spill = spill;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (spill != null) {
+                spill.close();
+            }
+        }
+    }
+
+    /**
+     * Temporary file holding UTF-16 characters at fixed offsets, so that a quote opener that was
+     * spilled before its closing quote arrived can still be patched in place.
+     */
+    private static final class Spill implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer bytes = ByteBuffer.allocate(64 * 1024);
+
+        Spill(Path directory) throws IOException {
+            Path file = directory != null
+                    ? Files.createTempFile(directory, "typography-", ".spill")
+                    : Files.createTempFile("typography-", ".spill");
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        }
+
+        void append(char[] chars, int offset, int length) throws IOException {
+            int end = offset + length;
+            while (offset < end) {
+                bytes.clear();
+                int count = Math.min(end - offset, bytes.capacity() / 2);
+                bytes.asCharBuffer().put(chars, offset, count);
+                bytes.limit(count * 2);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                offset += count;
+            }
+        }
+
+        void patch(long position, char c) {
+            ByteBuffer one = ByteBuffer.allocate(2).putChar(0, c);
+            try {
+                while (one.hasRemaining()) {
+                    channel.write(one, position * 2 + one.position());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Writes the whole spilled content to the target and empties the file for reuse.
+         */
+        void transferTo(Writer target) throws IOException {
+            char[] chars = new char[bytes.capacity() / 2];
+            channel.position(0);
+            bytes.clear();
+            while (channel.read(bytes) >= 0) {
+                bytes.flip();
+                int count = bytes.remaining() / 2;
+                bytes.asCharBuffer().get(chars, 0, count);
+                target.write(chars, 0, count);
+                bytes.position(count * 2);
+                bytes.compact();
+            }
+            channel.truncate(0);
+            channel.position(0);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package org.manusmith.shell.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming transform that fixes the typography of a WordprocessingML part without touching its
+ * formatting.
+ * <p>
+ * Each paragraph ({@code w:p}) is buffered while it is read. The text of its runs, with tabs and
+ * breaks, is concatenated and cleaned as a whole, so rules such as {@code --} or quote pairing
+ * apply across run boundaries. The cleaned text is then written back into the original
+ * {@code w:t} elements through a run-offset map, keeping every run and its properties. Paragraphs
+ * in text boxes are cleaned on their own.
+ * <p>
+ * Cleaning only ever changes punctuation and spaces, so letters, digits, tabs and breaks serve as
+ * anchors between the source and the cleaned text, and only the short gaps between anchors need
+ * aligning. A paragraph whose cleaned text cannot be mapped onto its runs is left unchanged.
+ */
+public class TypographyTransformer extends EventTransformer {
+    private static final Logger logger = LoggerFactory.getLogger(TypographyTransformer.class);
+
+    private static final XMLEventFactory EVENTS = XMLEventFactory.newDefaultFactory();
+    private static final QName XML_SPACE = new QName(XMLConstants.XML_NS_URI, "space", "xml");
+
+    // Gaps with larger alignment tables are mapped proportionally instead
+    private static final int MAX_ALIGNMENT_CELLS = 1 << 16;
+
+    private final TypographyEngine engine;
+    private final TypographyEngine.RuleStats stats;
+
+    /**
+     * @param engine The profile to apply
+     * @param stats Receives the rule hits of all transformed parts
+     */
+    public TypographyTransformer(TypographyEngine engine, TypographyEngine.RuleStats stats) {
+        super("typography");
+        this.engine = engine;
+        this.stats = stats;
+    }
+
+    @Override
+    protected boolean transform(StartElement element, QName parent, XMLEventReader source, List<XMLEvent> out)
+            throws XMLStreamException {
+        if (!isWord(element.getName(), "p")) {
+            return false;
+        }
+        new Paragraph().read(element, source).writeTo(out);
+        return true;
+    }
+
+    /**
+     * The text of one paragraph and where each piece of it came from
+     */
+    private static final class Story {
+        final StringBuilder text = new StringBuilder();
+        final List<Integer> starts = new ArrayList<>();
+        // Buffer index of the w:t start element of each piece, or -1 for a tab or break
+        final List<Integer> events = new ArrayList<>();
+
+        void add(String piece, int event) {
+            starts.add(text.length());
+            events.add(event);
+            text.append(piece);
+        }
+    }
+
+    /**
+     * A buffered top-level paragraph, including any paragraphs nested in it
+     */
+    private final class Paragraph {
+        private final List<XMLEvent> events = new ArrayList<>();
+        private final Map<Integer, String> replacements = new HashMap<>();
+
+        Paragraph read(StartElement start, XMLEventReader reader) throws XMLStreamException {
+            Deque<QName> open = new ArrayDeque<>();
+            Deque<Story> stories = new ArrayDeque<>();
+            open.push(start.getName());
+            stories.push(new Story());
+            events.add(start);
+
+            while (!open.isEmpty()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    QName name = event.asStartElement().getName();
+                    boolean inRun = isWord(open.peek(), "r");
+                    if (inRun && isWord(name, "t")) {
+                        int index = events.size();
+                        stories.peek().add(readText(event, reader), index);
+                        continue;
+                    }
+                    if (inRun && isWord(name, "tab")) {
+                        stories.peek().add("\t", -1);
+                    } else if (inRun && (isWord(name, "br") || isWord(name, "cr"))) {
+                        stories.peek().add("\n", -1);
+                    } else if (isWord(name, "p")) {
+                        stories.push(new Story());
+                    }
+                    open.push(name);
+                } else if (event.isEndElement()) {
+                    if (isWord(open.pop(), "p")) {
+                        clean(stories.pop());
+                    }
+                }
+                events.add(event);
+            }
+            return this;
+        }
+
+        /**
+         * Buffers a {@code w:t} element whose start has just been read and returns its text
+         */
+        private String readText(XMLEvent start, XMLEventReader reader) throws XMLStreamException {
+            events.add(start);
+            StringBuilder text = new StringBuilder();
+            while (true) {
+                XMLEvent event = reader.nextEvent();
+                events.add(event);
+                if (event.isEndElement()) {
+                    return text.toString();
+                }
+                if (event.isCharacters()) {
+                    text.append(event.asCharacters().getData());
+                }
+            }
+        }
+
+        private void clean(Story story) {
+            String source = story.text.toString();
+            if (story.events.stream().noneMatch(event -> event >= 0) || engine.isClean(source)) {
+                return;
+            }
+            // Parts may be transformed concurrently, so hits are merged into the shared stats
+            TypographyEngine.RuleStats paragraphStats = new TypographyEngine.RuleStats();
+            String cleaned = engine.clean(source, paragraphStats);
+            synchronized (stats) {
+                stats.add(paragraphStats);
+            }
+            if (cleaned.equals(source)) {
+                return;
+            }
+
+            int pieces = story.starts.size();
+            int[] starts = new int[pieces];
+            boolean[] fixed = new boolean[pieces];
+            for (int p = 0; p < pieces; p++) {
+                starts[p] = story.starts.get(p);
+                fixed[p] = story.events.get(p) < 0;
+            }
+            String[] texts = redistribute(source, starts, fixed, cleaned);
+            if (texts == null) {
+                logger.debug("Typography of a paragraph could not be mapped onto its runs, left unchanged");
+                return;
+            }
+            for (int p = 0; p < pieces; p++) {
+                int end = p + 1 < pieces ? starts[p + 1] : source.length();
+                if (!fixed[p] && !texts[p].equals(source.substring(starts[p], end))) {
+                    replacements.put(story.events.get(p), texts[p]);
+                }
+            }
+        }
+
+        void writeTo(List<XMLEvent> out) {
+            if (replacements.isEmpty()) {
+                out.addAll(events);
+                return;
+            }
+            int from = 0;
+            for (int i = 0; i < events.size(); i++) {
+                String text = replacements.get(i);
+                if (text == null) {
+                    continue;
+                }
+                out.addAll(events.subList(from, i));
+                int end = i + 1;
+                while (!events.get(end).isEndElement()) {
+                    end++;
+                }
+                out.add(preserveSpace(events.get(i).asStartElement(), text));
+                if (!text.isEmpty()) {
+                    out.add(EVENTS.createCharacters(text));
+                }
+                out.add(events.get(end));
+                from = end + 1;
+                i = end;
+            }
+            out.addAll(events.subList(from, events.size()));
+        }
+    }
+
+    /**
+     * Adds {@code xml:space="preserve"} to a {@code w:t} start element if its new text would
+     * otherwise lose spaces
+     */
+    private static StartElement preserveSpace(StartElement start, String text) {
+        boolean needed = !text.isEmpty() && (Character.isWhitespace(text.charAt(0))
+                || Character.isWhitespace(text.charAt(text.length() - 1)) || text.contains("  "));
+        if (!needed || start.getAttributeByName(XML_SPACE) != null) {
+            return start;
+        }
+        List<Attribute> attributes = new ArrayList<>();
+        for (Iterator<Attribute> it = start.getAttributes(); it.hasNext(); ) {
+            attributes.add(it.next());
+        }
+        attributes.add(EVENTS.createAttribute(XML_SPACE, "preserve"));
+        return EVENTS.createStartElement(start.getName(), attributes.iterator(), start.getNamespaces());
+    }
+
+    /**
+     * Distributes the cleaned text of a paragraph over the pieces its source text came from.
+     *
+     * @param source The concatenated source text
+     * @param starts Offset of each piece in {@code source}
+     * @param fixed Which pieces are tabs or breaks, which cleaning must leave in place
+     * @param cleaned The cleaned text
+     * @return The new text of each piece (null for fixed pieces), or null if the cleaned text
+     *         cannot be mapped onto the pieces
+     */
+    static String[] redistribute(String source, int[] starts, boolean[] fixed, String cleaned) {
+        int[] pieceOf = new int[source.length()];
+        for (int p = 0; p < starts.length; p++) {
+            int end = p + 1 < starts.length ? starts[p + 1] : source.length();
+            for (int k = starts[p]; k < end; k++) {
+                pieceOf[k] = p;
+            }
+        }
+        Alignment alignment = new Alignment(source, cleaned, pieceOf, fixed);
+
+        int i = 0;
+        int j = 0;
+        while (true) {
+            int nextI = nextAnchor(source, i);
+            int nextJ = nextAnchor(cleaned, j);
+            if (!alignment.gap(i, nextI, j, nextJ)) {
+                return null;
+            }
+            if (nextI == source.length() || nextJ == cleaned.length()) {
+                if (nextI != source.length() || nextJ != cleaned.length()) {
+                    return null;
+                }
+                break;
+            }
+            if (source.charAt(nextI) != cleaned.charAt(nextJ)) {
+                return null;
+            }
+            alignment.emit(nextJ, nextI);
+            i = nextI + 1;
+            j = nextJ + 1;
+        }
+
+        String[] texts = new String[starts.length];
+        for (int p = 0; p < starts.length; p++) {
+            texts[p] = fixed[p] ? null : alignment.texts[p].toString();
+        }
+        return texts;
+    }
+
+    /**
+     * Characters cleaning never changes: letters, digits, tabs and breaks
+     */
+    private static boolean isAnchor(char c) {
+        return Character.isLetterOrDigit(c) || c == '\t' || c == '\n';
+    }
+
+    private static int nextAnchor(String s, int from) {
+        while (from < s.length() && !isAnchor(s.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Assigns each cleaned character to the piece of a source character, in order
+     */
+    private static final class Alignment {
+        final String source;
+        final String cleaned;
+        final int[] pieceOf;
+        final boolean[] fixed;
+        final StringBuilder[] texts;
+        int lastOwner = -1;
+
+        Alignment(String source, String cleaned, int[] pieceOf, boolean[] fixed) {
+            this.source = source;
+            this.cleaned = cleaned;
+            this.pieceOf = pieceOf;
+            this.fixed = fixed;
+            this.texts = new StringBuilder[fixed.length];
+            for (int p = 0; p < fixed.length; p++) {
+                texts[p] = new StringBuilder();
+            }
+        }
+
+        /**
+         * Writes cleaned character {@code j}, which belongs where source character {@code owner} was
+         */
+        void emit(int j, int owner) {
+            if (!fixed[pieceOf[owner]]) {
+                texts[pieceOf[owner]].append(cleaned.charAt(j));
+            }
+            lastOwner = owner;
+        }
+
+        /**
+         * Aligns {@code source[i, nextI)} with {@code cleaned[j, nextJ)}, neither of which contains
+         * an anchor, so every source character in the gap belongs to a text piece
+         */
+        boolean gap(int i, int nextI, int j, int nextJ) {
+            int a = nextI - i;
+            int b = nextJ - j;
+            if (b == 0) {
+                return true;
+            }
+            if (a == 0) {
+                // Inserted text goes with the previous text piece, or else the next one
+                int owner = lastOwner >= 0 && !fixed[pieceOf[lastOwner]] ? lastOwner
+                        : nextI < source.length() && !fixed[pieceOf[nextI]] ? nextI : -1;
+                if (owner < 0) {
+                    return false;
+                }
+                for (int y = j; y < nextJ; y++) {
+                    emit(y, owner);
+                }
+                return true;
+            }
+            if ((long) a * b > MAX_ALIGNMENT_CELLS) {
+                for (int y = 0; y < b; y++) {
+                    emit(j + y, i + (int) ((long) y * a / b));
+                }
+                return true;
+            }
+
+            // Longest common subsequence; characters replaced by a run of new ones hand their
+            // piece over to them, as when "..." split across runs becomes one ellipsis
+            int[][] common = new int[a + 1][b + 1];
+            for (int x = a - 1; x >= 0; x--) {
+                for (int y = b - 1; y >= 0; y--) {
+                    common[x][y] = source.charAt(i + x) == cleaned.charAt(j + y)
+                            ? common[x + 1][y + 1] + 1
+                            : Math.max(common[x + 1][y], common[x][y + 1]);
+                }
+            }
+            int x = 0;
+            int y = 0;
+            int deleted = -1;
+            while (y < b) {
+                if (x < a && source.charAt(i + x) == cleaned.charAt(j + y)
+                        && common[x][y] == common[x + 1][y + 1] + 1) {
+                    emit(j + y, i + x);
+                    deleted = -1;
+                    x++;
+                    y++;
+                } else if (x < a && common[x + 1][y] >= common[x][y + 1]) {
+                    if (deleted < 0) {
+                        deleted = i + x;
+                    }
+                    x++;
+                } else {
+                    int owner = deleted >= 0 ? deleted
+                            : lastOwner >= 0 && !fixed[pieceOf[lastOwner]] ? lastOwner
+                            : i + Math.min(x, a - 1);
+                    emit(j + y, owner);
+                    y++;
+                }
+            }
+            return true;
+        }
+    }
+}
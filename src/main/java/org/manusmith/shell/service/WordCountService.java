@@ -0,0 +1,230 @@
+package org.manusmith.shell.service;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Counts the words of a manuscript without loading it.
+ * <p>
+ * DOCX and ODT documents are read with a StAX cursor over the body text, Markdown and plain text
+ * through a buffered reader; the text is fed to a {@link WordCounter} chunk by chunk, so memory
+ * use does not grow with the length of the manuscript.
+ */
+public class WordCountService {
+    private static final Logger logger = LoggerFactory.getLogger(WordCountService.class);
+
+    private static final String ODF_TEXT_NS = "urn:oasis:names:tc:opendocument:xmlns:text:1.0";
+    private static final String ODF_OFFICE_NS = "urn:oasis:names:tc:opendocument:xmlns:office:1.0";
+    private static final int BUFFER_SIZE = 8192;
+
+    // Above this count a manuscript is a novel, rounded to thousands rather than hundreds
+    private static final long NOVEL_WORDS = 40_000;
+
+    private final MetricsService metricsService;
+
+    public WordCountService() {
+        this.metricsService = MetricsService.getInstance();
+    }
+
+    /**
+     * Counts the words of a .docx, .odt, .md or .txt file
+     */
+    public long countWords(File file) throws IOException {
+        if (file == null || !file.isFile()) {
+            throw new IOException("File does not exist: " + file);
+        }
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        String format = name.substring(name.lastIndexOf('.') + 1);
+        long start = System.nanoTime();
+        WordCounter counter = new WordCounter();
+        switch (format) {
+            case "docx" -> countDocx(file, counter);
+            case "odt" -> countOdt(file, counter);
+            case "md" -> countMarkdown(file, counter);
+            case "txt" -> countText(file, counter);
+            default -> throw new IOException("Unsupported file type for word count: " + file.getName());
+        }
+        metricsService.recordTime("document.word_count.time", System.nanoTime() - start, "format", format);
+        logger.debug("Counted {} words in {}", counter.getWords(), file.getName());
+        return counter.getWords();
+    }
+
+    /**
+     * Rounds a word count the way standard manuscript format asks for: to the nearest hundred for
+     * short fiction, to the nearest thousand for novels, and never down to zero
+     */
+    public static long roundShunn(long words) {
+        if (words <= 0) {
+            return 0;
+        }
+        long unit = words < NOVEL_WORDS ? 100 : 1000;
+        return Math.max(unit, (words + unit / 2) / unit * unit);
+    }
+
+    private void countDocx(File file, WordCounter counter) throws IOException {
+        try (OoxmlPackage docx = new OoxmlPackage(file)) {
+            List<String> mainParts = docx.getPartsOfType(DocxProcessingService.MAIN_CONTENT_TYPES);
+            if (mainParts.isEmpty()) {
+                throw new IOException("No main document part found in " + file.getName());
+            }
+            try (InputStream in = docx.getInputStream(mainParts.get(0))) {
+                XMLStreamReader reader = XmlPartWriter.newStreamReader(in);
+                boolean inText = false;
+                // Word keeps a fallback copy of each text box; only the first copy is counted
+                int fallbackDepth = 0;
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.START_ELEMENT -> {
+                            String namespace = reader.getNamespaceURI();
+                            if (DocxTextExtractor.MARKUP_COMPATIBILITY_NS.equals(namespace)
+                                    && "Fallback".equals(reader.getLocalName())) {
+                                fallbackDepth++;
+                            } else if (fallbackDepth == 0 && RunProperties.WORDML_NS.equals(namespace)) {
+                                switch (reader.getLocalName()) {
+                                    case "t" -> inText = true;
+                                    case "tab", "br", "cr", "ptab" -> counter.boundary();
+                                    default -> { }
+                                }
+                            }
+                        }
+                        case XMLStreamConstants.END_ELEMENT -> {
+                            String namespace = reader.getNamespaceURI();
+                            if (DocxTextExtractor.MARKUP_COMPATIBILITY_NS.equals(namespace)
+                                    && "Fallback".equals(reader.getLocalName())) {
+                                fallbackDepth--;
+                            } else if (fallbackDepth == 0 && RunProperties.WORDML_NS.equals(namespace)) {
+                                switch (reader.getLocalName()) {
+                                    case "t" -> inText = false;
+                                    case "p" -> counter.boundary();
+                                    default -> { }
+                                }
+                            }
+                        }
+                        case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                            if (inText && fallbackDepth == 0) {
+                                counter.accept(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                            }
+                        }
+                        default -> { }
+                    }
+                }
+                reader.close();
+            } catch (XMLStreamException e) {
+                throw new IOException("Invalid document part in " + file.getName() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void countOdt(File file, WordCounter counter) throws IOException {
+        try (ZipFile zip = ZipFile.builder().setFile(file).get()) {
+            ZipArchiveEntry entry = zip.getEntry("content.xml");
+            if (entry == null) {
+                throw new IOException("No content.xml found in " + file.getName());
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                XMLStreamReader reader = XmlPartWriter.newStreamReader(in);
+                boolean inBody = false;
+                int annotationDepth = 0;
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.START_ELEMENT -> {
+                            String namespace = reader.getNamespaceURI();
+                            String localName = reader.getLocalName();
+                            if (ODF_OFFICE_NS.equals(namespace) && "body".equals(localName)) {
+                                inBody = true;
+                            } else if (ODF_OFFICE_NS.equals(namespace) && "annotation".equals(localName)) {
+                                annotationDepth++;
+                            } else if (ODF_TEXT_NS.equals(namespace)) {
+                                switch (localName) {
+                                    case "s", "tab", "line-break" -> counter.boundary();
+                                    default -> { }
+                                }
+                            }
+                        }
+                        case XMLStreamConstants.END_ELEMENT -> {
+                            String namespace = reader.getNamespaceURI();
+                            String localName = reader.getLocalName();
+                            if (ODF_OFFICE_NS.equals(namespace) && "body".equals(localName)) {
+                                inBody = false;
+                            } else if (ODF_OFFICE_NS.equals(namespace) && "annotation".equals(localName)) {
+                                annotationDepth--;
+                            } else if (ODF_TEXT_NS.equals(namespace) && ("p".equals(localName) || "h".equals(localName))) {
+                                counter.boundary();
+                            }
+                        }
+                        case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                            if (inBody && annotationDepth == 0) {
+                                counter.accept(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                            }
+                        }
+                        default -> { }
+                    }
+                }
+                reader.close();
+            } catch (XMLStreamException e) {
+                throw new IOException("Invalid content.xml in " + file.getName() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void countText(File file, WordCounter counter) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[BUFFER_SIZE];
+            for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+                counter.accept(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Counts Markdown as text, leaving out link and image targets and HTML tags; the markup
+     * characters themselves are not words
+     */
+    private void countMarkdown(File file, WordCounter counter) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[BUFFER_SIZE];
+            char previous = 0;
+            int targetDepth = 0;
+            boolean inTag = false;
+            for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+                for (int i = 0; i < read; i++) {
+                    char c = buffer[i];
+                    // "<" starts a tag only when a name, "/" or "!" follows, not in "a < b"
+                    if (previous == '<' && targetDepth == 0 && !inTag) {
+                        inTag = Character.isLetter(c) || c == '/' || c == '!';
+                    }
+                    if (targetDepth > 0) {
+                        if (c == '(') {
+                            targetDepth++;
+                        } else if (c == ')' || c == '\n') {
+                            targetDepth = c == '\n' ? 0 : targetDepth - 1;
+                        }
+                    } else if (inTag) {
+                        inTag = c != '>' && c != '\n';
+                    } else if (c == '(' && previous == ']') {
+                        targetDepth = 1;
+                        counter.boundary();
+                    } else {
+                        counter.accept(c);
+                    }
+                    previous = c;
+                }
+            }
+        }
+    }
+}
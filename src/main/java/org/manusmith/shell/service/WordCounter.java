@@ -0,0 +1,95 @@
+package org.manusmith.shell.service;
+
+/**
+ * Counts words in text handed over in chunks, without building the text or allocating per word.
+ * <p>
+ * A word is a run of letters, digits and combining marks. Apostrophes, hyphens and the separators
+ * of numbers join two such runs into one word, so "don't", "well-known" and "3.14" count once,
+ * as a word processor counts them. Every ideograph counts as a word of its own. The text of one
+ * call may continue a word of the previous call; {@link #boundary()} ends the current word where
+ * the markup breaks the text, like at the end of a paragraph.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class WordCounter {
+
+    private long words;
+    private boolean inWord;
+    private boolean joinerPending;
+    private char highSurrogate;
+
+    public void accept(char[] text, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            accept(text[i]);
+        }
+    }
+
+    public void accept(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            accept(text.charAt(i));
+        }
+    }
+
+    public void accept(char c) {
+        if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+            return;
+        }
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                acceptCodePoint(Character.toCodePoint(high, c));
+                return;
+            }
+        }
+        acceptCodePoint(c);
+    }
+
+    /**
+     * Ends the current word, if any
+     */
+    public void boundary() {
+        highSurrogate = 0;
+        inWord = false;
+        joinerPending = false;
+    }
+
+    public long getWords() {
+        return words;
+    }
+
+    private void acceptCodePoint(int codePoint) {
+        if (Character.isIdeographic(codePoint)) {
+            words++;
+            boundary();
+        } else if (isWordPart(codePoint)) {
+            if (!inWord) {
+                words++;
+                inWord = true;
+            }
+            joinerPending = false;
+        } else if (inWord && !joinerPending && isJoiner(codePoint)) {
+            joinerPending = true;
+        } else {
+            inWord = false;
+            joinerPending = false;
+        }
+    }
+
+    private static boolean isWordPart(int codePoint) {
+        if (Character.isLetterOrDigit(codePoint)) {
+            return true;
+        }
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK || type == Character.CONNECTOR_PUNCTUATION;
+    }
+
+    private static boolean isJoiner(int codePoint) {
+        return switch (codePoint) {
+            case '\'', '’', '-', '‐', '‑', '.', ',', '·' -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,174 @@
+package org.manusmith.shell.service;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes StAX events back out as an OOXML part.
+ * <p>
+ * Unlike {@code XMLEventWriter} this keeps empty elements such as {@code <w:b/>} empty and writes
+ * the {@code standalone} flag Word puts in the declaration of every part.
+ */
+final class XmlPartWriter {
+
+    private final Writer text;
+    private final XMLStreamWriter writer;
+
+    XmlPartWriter(OutputStream out) throws XMLStreamException {
+        this.text = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.writer = XMLOutputFactory.newDefaultFactory().createXMLStreamWriter(text);
+    }
+
+    /**
+     * Opens a reader for a part; DTDs and external entities are not processed
+     */
+    static XMLEventReader newReader(InputStream in) throws XMLStreamException {
+        return newInputFactory().createXMLEventReader(in);
+    }
+
+    /**
+     * Opens a cursor over a part, for readers that only look at the text and need no event
+     * objects; DTDs and external entities are not processed
+     */
+    static XMLStreamReader newStreamReader(InputStream in) throws XMLStreamException {
+        return newInputFactory().createXMLStreamReader(in);
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Copies the element started by {@code element}. When the element has no content its end
+     * event is taken from the reader too and true is returned.
+     */
+    boolean copyStart(StartElement element, XMLEventReader reader) throws XMLStreamException {
+        boolean empty = reader.peek() != null && reader.peek().isEndElement();
+        startElement(element, empty);
+        if (empty) {
+            reader.nextEvent();
+        }
+        return empty;
+    }
+
+    /**
+     * Copies all remaining events of a reader
+     */
+    void copy(XMLEventReader reader) throws XMLStreamException {
+        // peek() rather than hasNext() so that errors surface as checked exceptions
+        while (reader.peek() != null) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                copyStart(event.asStartElement(), reader);
+            } else {
+                write(event);
+            }
+        }
+    }
+
+    /**
+     * Writes buffered events, keeping elements without content empty
+     */
+    void write(List<XMLEvent> events) throws XMLStreamException {
+        for (int i = 0, n = events.size(); i < n; i++) {
+            XMLEvent event = events.get(i);
+            if (event.isStartElement()) {
+                boolean empty = i + 1 < n && events.get(i + 1).isEndElement();
+                startElement(event.asStartElement(), empty);
+                if (empty) {
+                    i++;
+                }
+            } else {
+                write(event);
+            }
+        }
+    }
+
+    void write(XMLEvent event) throws XMLStreamException {
+        switch (event.getEventType()) {
+            case XMLStreamConstants.START_ELEMENT -> startElement(event.asStartElement(), false);
+            case XMLStreamConstants.END_ELEMENT -> writer.writeEndElement();
+            case XMLStreamConstants.START_DOCUMENT -> writeDeclaration((StartDocument) event);
+            case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE -> writer.writeCharacters(
+                    event.asCharacters().getData());
+            case XMLStreamConstants.CDATA -> writer.writeCData(event.asCharacters().getData());
+            case XMLStreamConstants.COMMENT -> writer.writeComment(((Comment) event).getText());
+            case XMLStreamConstants.PROCESSING_INSTRUCTION -> {
+                ProcessingInstruction instruction = (ProcessingInstruction) event;
+                writer.writeProcessingInstruction(instruction.getTarget(), instruction.getData());
+            }
+            case XMLStreamConstants.END_DOCUMENT -> writer.writeEndDocument();
+            default -> { }
+        }
+    }
+
+    /**
+     * Flushes everything written so far; the underlying stream is left open
+     */
+    void flush() throws IOException {
+        try {
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        text.flush();
+    }
+
+    private void startElement(StartElement element, boolean empty) throws XMLStreamException {
+        QName name = element.getName();
+        if (empty) {
+            writer.writeEmptyElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+        } else {
+            writer.writeStartElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+        }
+        for (Iterator<Namespace> it = element.getNamespaces(); it.hasNext(); ) {
+            Namespace namespace = it.next();
+            writer.writeNamespace(namespace.getPrefix(), namespace.getNamespaceURI());
+        }
+        for (Iterator<Attribute> it = element.getAttributes(); it.hasNext(); ) {
+            Attribute attribute = it.next();
+            QName attributeName = attribute.getName();
+            writer.writeAttribute(attributeName.getPrefix(), attributeName.getNamespaceURI(),
+                    attributeName.getLocalPart(), attribute.getValue());
+        }
+    }
+
+    private void writeDeclaration(StartDocument document) throws XMLStreamException {
+        try {
+            writer.flush();
+            text.write("<?xml version=\"1.0\" encoding=\"UTF-8\"");
+            if (document.standaloneSet()) {
+                text.write(document.isStandalone() ? " standalone=\"yes\"" : " standalone=\"no\"");
+            }
+            text.write("?>\r\n");
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.manusmith.shell.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Debounced background pipeline for live previews.
+ * <p>
+ * Inputs submitted in quick succession are coalesced: work starts only after no new input has
+ * arrived for the debounce delay, and runs on a dedicated worker thread rather than the JavaFX
+ * Application Thread. A newer input cancels the run in progress (by interrupting it) and stale
+ * results are never published, so the publisher only ever sees the result for the latest input.
+ * <p>
+ * All work runs on the same single thread, so the worker function may keep unsynchronized state
+ * between runs.
+ *
+ * @param <I> Input type, e.g. the text being edited
+ * @param <O> Result type
+ */
+public class PreviewPipeline<I, O> {
+    private static final Logger logger = LoggerFactory.getLogger(PreviewPipeline.class);
+
+    private final Duration debounce;
+    private final Function<I, O> worker;
+    private final Consumer<O> publisher;
+    private final Consumer<Throwable> errorHandler;
+    private final Consumer<Duration> latencyRecorder;
+    private final Executor publishExecutor;
+    private final ScheduledExecutorService executor;
+    private final AtomicLong generation = new AtomicLong();
+    private Future<?> pending;
+
+    /**
+     * @param name Name of the worker thread
+     * @param debounce Quiet period after the last input before work starts
+     * @param worker Computes a result; runs on the worker thread
+     * @param publisher Receives the latest result; runs on {@code publishExecutor}
+     * @param errorHandler Receives failures of the latest run; runs on {@code publishExecutor}
+     * @param latencyRecorder Receives the time from the latest input to its published result
+     * @param publishExecutor Where results are delivered, typically {@code Platform::runLater}
+     */
+    public PreviewPipeline(String name, Duration debounce, Function<I, O> worker, Consumer<O> publisher,
+                           Consumer<Throwable> errorHandler, Consumer<Duration> latencyRecorder,
+                           Executor publishExecutor) {
+        this.debounce = debounce;
+        this.worker = worker;
+        this.publisher = publisher;
+        this.errorHandler = errorHandler;
+        this.latencyRecorder = latencyRecorder;
+        this.publishExecutor = publishExecutor;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits a new input, superseding every earlier one that has not been published yet
+     */
+    public synchronized void submit(I input) {
+        long submittedAt = System.nanoTime();
+        long current = generation.incrementAndGet();
+        if (pending != null) {
+            pending.cancel(true);
+        }
+        pending = executor.schedule(() -> run(input, current, submittedAt),
+                debounce.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the worker thread; pending and running work is abandoned
+     */
+    public synchronized void shutdown() {
+        generation.incrementAndGet();
+        executor.shutdownNow();
+    }
+
+    private void run(I input, long current, long submittedAt) {
+        if (isStale(current)) {
+            return;
+        }
+        try {
+            O result = worker.apply(input);
+            if (isStale(current)) {
+                return;
+            }
+            publishExecutor.execute(() -> {
+                // A newer input may have arrived while this result was queued
+                if (!isStale(current)) {
+                    publisher.accept(result);
+                    latencyRecorder.accept(Duration.ofNanos(System.nanoTime() - submittedAt));
+                }
+            });
+        } catch (CancellationException e) {
+            logger.debug("Preview run superseded by a newer input");
+        } catch (RuntimeException e) {
+            if (isStale(current)) {
+                return;
+            }
+            logger.error("Preview run failed: {}", e.getMessage(), e);
+            publishExecutor.execute(() -> {
+                if (!isStale(current)) {
+                    errorHandler.accept(e);
+                }
+            });
+        }
+    }
+
+    private boolean isStale(long current) {
+        return generation.get() != current;
+    }
+}
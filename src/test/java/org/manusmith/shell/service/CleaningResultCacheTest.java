@@ -0,0 +1,77 @@
+package org.manusmith.shell.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Test suite for CleaningResultCache
+ */
+class CleaningResultCacheTest {
+
+    private MetricsService metricsService;
+
+    @BeforeEach
+    void setUp() {
+        // Reset singletons for clean tests
+        ConfigurationService.instance = null;
+        MetricsService.instance = null;
+        CleaningResultCache.instance = null;
+        this.metricsService = MetricsService.getInstance();
+    }
+
+    @Test
+    void get_afterPut_shouldReturnResultForSameTextAndProfileOnly() {
+        CleaningResultCache cache = new CleaningResultCache(1000, metricsService);
+        cache.put("a -- b", "EN", "a — b");
+
+        assertThat(cache.get(new String("a -- b"), "EN")).isEqualTo("a — b");
+        assertThat(cache.get("a -- b", "HU")).isNull();
+        assertThat(cache.get("a -- c", "EN")).isNull();
+        assertThat(counter("text.cleaning.cache.hit")).isEqualTo(1);
+        assertThat(counter("text.cleaning.cache.miss")).isEqualTo(2);
+    }
+
+    @Test
+    void put_beyondMaxChars_shouldEvictLeastRecentlyUsed() {
+        CleaningResultCache cache = new CleaningResultCache(40, metricsService);
+        cache.put("first....", "EN", "first…"); // 15 chars
+        cache.put("second...", "EN", "second…"); // 16 chars
+        cache.get("first....", "EN");
+
+        cache.put("third....", "EN", "third…"); // 15 chars
+
+        assertThat(cache.get("first....", "EN")).isEqualTo("first…");
+        assertThat(cache.get("second...", "EN")).isNull();
+        assertThat(cache.get("third....", "EN")).isEqualTo("third…");
+        assertThat(cache.getTotalChars()).isEqualTo(30);
+        assertThat(counter("text.cleaning.cache.eviction")).isEqualTo(1);
+    }
+
+    @Test
+    void put_withEntryLargerThanHalfTheCache_shouldNotStoreIt() {
+        CleaningResultCache cache = new CleaningResultCache(10, metricsService);
+        cache.put("longer text", "EN", "longer text");
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void cleanText_withRepeatedInput_shouldServeSecondCallFromCache() {
+        EngineBridge engineBridge = new EngineBridge();
+        String text = "She said \"wait...\"";
+
+        String first = engineBridge.cleanText(text, "EN");
+        String second = engineBridge.cleanText(text, "EN");
+
+        assertThat(second).isSameAs(first);
+        assertThat(counter("text.cleaning.cache.hit")).isEqualTo(1);
+    }
+
+    private double counter(String name) {
+        return metricsService.getMeterRegistry().find(name).counters().stream()
+                .mapToDouble(c -> c.count())
+                .sum();
+    }
+}
@@ -0,0 +1,132 @@
+package org.manusmith.shell.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Test suite for ConverterRegistry
+ */
+class ConverterRegistryTest {
+
+    @Test
+    void findRoute_withDirectConverter_shouldReturnSingleStep() {
+        ConverterRegistry registry = new ConverterRegistry(List.of(
+                new FakeConverter("txt", "docx", true), new FakeConverter("docx", "txt", true)));
+
+        ConverterRegistry.Route route = registry.findRoute("txt", "docx");
+
+        assertThat(route.steps()).hasSize(1);
+        assertThat(route).hasToString("txt->docx");
+        assertThat(route.isStreaming()).isTrue();
+        assertThat(registry.findRoute("txt", "pdf")).isNull();
+        assertThat(registry.findRoute("pdf", "txt")).isNull();
+    }
+
+    @Test
+    void findRoute_withoutDirectConverter_shouldChainThroughIntermediateFormat() {
+        ConverterRegistry registry = new ConverterRegistry(List.of(
+                new FakeConverter("txt", "docx", true), new FakeConverter("odt", "txt", false)));
+
+        ConverterRegistry.Route route = registry.findRoute("odt", "docx");
+
+        assertThat(route).hasToString("odt->txt->docx");
+        assertThat(route.isStreaming()).isFalse();
+        assertThat(route.getMemoryUse()).isEqualTo(DocumentConverter.MemoryUse.DOCUMENT);
+        assertThat(registry.findRoute("docx", "odt")).isNull();
+    }
+
+    @Test
+    void findRoute_withSeveralConvertersForSameFormats_shouldPickHighestPriority() {
+        FakeConverter fast = new FakeConverter("docx", "txt", true) {
+            @Override
+            public int getPriority() {
+                return 10;
+            }
+        };
+        ConverterRegistry registry = new ConverterRegistry(List.of(new FakeConverter("docx", "txt", false), fast));
+
+        assertThat(registry.findRoute("docx", "txt").steps()).containsExactly(fast);
+    }
+
+    @Test
+    void getDefaultTarget_shouldReturnFirstRegisteredTarget() {
+        ConverterRegistry registry = new ConverterRegistry(List.of(
+                new FakeConverter("txt", "docx", true), new FakeConverter("txt", "md", true)));
+
+        assertThat(registry.getDefaultTarget("txt")).isEqualTo("docx");
+        assertThat(registry.getDefaultTarget("pdf")).isNull();
+    }
+
+    @Test
+    void convert_alongChain_shouldPassThroughTempFilesAndDeleteThem(@TempDir Path tempDir) throws IOException {
+        ConverterRegistry registry = new ConverterRegistry(List.of(
+                new FakeConverter("odt", "txt", true), new FakeConverter("txt", "docx", true)));
+        Path input = Files.writeString(tempDir.resolve("input.odt"), "text");
+        Path spill = Files.createDirectory(tempDir.resolve("spill"));
+        Path output = tempDir.resolve("output.docx");
+
+        registry.findRoute("odt", "docx").convert(input.toFile(), output.toFile(), spill);
+
+        assertThat(output).hasContent("text odt->txt txt->docx");
+        assertThat(spill).isEmptyDirectory();
+    }
+
+    @Test
+    void getInstance_shouldDiscoverBuiltInConverters() {
+        ConverterRegistry registry = ConverterRegistry.getInstance();
+
+        assertThat(registry.getSourceFormats()).contains("txt", "docx", "md", "odt");
+        assertThat(registry.getDefaultTarget("txt")).isEqualTo("docx");
+        assertThat(registry.getDefaultTarget("odt")).isEqualTo("txt");
+        assertThat(registry.findRoute("odt", "docx")).hasToString("odt->txt->docx");
+        assertThat(ConverterRegistry.formatOf(new File("Chapter 1.MD"))).isEqualTo("md");
+    }
+
+    // Appends the conversion to the text, so the test can check which steps ran
+    private static class FakeConverter implements DocumentConverter {
+        private final String source;
+        private final String target;
+        private final boolean streaming;
+
+        FakeConverter(String source, String target, boolean streaming) {
+            this.source = source;
+            this.target = target;
+            this.streaming = streaming;
+        }
+
+        @Override
+        public String getSourceFormat() {
+            return source;
+        }
+
+        @Override
+        public String getTargetFormat() {
+            return target;
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return streaming;
+        }
+
+        @Override
+        public MemoryUse getMemoryUse() {
+            return streaming ? MemoryUse.CONSTANT : MemoryUse.DOCUMENT;
+        }
+
+        @Override
+        public void convert(File inputFile, File outputFile) throws IOException {
+            Files.writeString(outputFile.toPath(), Files.readString(inputFile.toPath())
+                    + " " + source + "->" + target.toLowerCase(Locale.ROOT));
+        }
+    }
+}
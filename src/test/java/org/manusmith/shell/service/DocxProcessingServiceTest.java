@@ -0,0 +1,403 @@
+package org.manusmith.shell.service;
+
+import org.apache.poi.wp.usermodel.HeaderFooterType;
+import org.apache.poi.xwpf.usermodel.UnderlinePatterns;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.manusmith.shell.dto.AuthorMeta;
+import org.manusmith.shell.dto.ConvertRequest;
+import org.manusmith.shell.dto.DocxTransform;
+import org.manusmith.shell.dto.FormattingPrefs;
+import org.manusmith.shell.dto.ManuscriptFont;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.StylesDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Test suite for DocxProcessingService and ItalicToUnderlineTransformer
+ */
+class DocxProcessingServiceTest {
+
+    private static final String W = "xmlns:w=\"" + RunProperties.WORDML_NS + "\"";
+
+    private final DocxProcessingService service = new DocxProcessingService();
+
+    @Test
+    void transform_withItalicRun_shouldWriteUnderlineInSchemaOrder() throws IOException {
+        String xml = "<w:document " + W + "><w:body><w:p><w:r>"
+                + "<w:rPr><w:b/><w:i/><w:iCs/><w:color w:val=\"FF0000\"/><w:sz w:val=\"24\"/><w:lang w:val=\"hu-HU\"/></w:rPr>"
+                + "<w:t xml:space=\"preserve\">dőlt  szöveg</w:t></w:r></w:p></w:body></w:document>";
+
+        String result = transform(xml);
+
+        assertThat(result).contains("<w:rPr><w:b/><w:iCs/><w:color w:val=\"FF0000\"/><w:sz w:val=\"24\"/>"
+                + "<w:u w:val=\"single\"/><w:lang w:val=\"hu-HU\"/></w:rPr>");
+        assertThat(result).contains("<w:t xml:space=\"preserve\">dőlt  szöveg</w:t>");
+    }
+
+    @Test
+    void transform_withItalicAsLastProperty_shouldAppendUnderline() throws IOException {
+        String xml = "<w:document " + W + "><w:body><w:p><w:r><w:rPr><w:i w:val=\"true\"/></w:rPr>"
+                + "<w:t>x</w:t></w:r></w:p></w:body></w:document>";
+
+        assertThat(transform(xml)).contains("<w:rPr><w:u w:val=\"single\"/></w:rPr>");
+    }
+
+    @Test
+    void transform_withExistingUnderline_shouldKeepItAndNotDuplicate() throws IOException {
+        String xml = "<w:document " + W + "><w:body><w:p>"
+                + "<w:r><w:rPr><w:i/><w:u w:val=\"double\"/></w:rPr><w:t>a</w:t></w:r>"
+                + "<w:r><w:rPr><w:i/><w:u w:val=\"none\"/></w:rPr><w:t>b</w:t></w:r>"
+                + "</w:p></w:body></w:document>";
+
+        String result = transform(xml);
+
+        assertThat(result).contains("<w:rPr><w:u w:val=\"double\"/></w:rPr>");
+        assertThat(result).contains("<w:rPr><w:u w:val=\"single\"/></w:rPr>");
+        assertThat(result).doesNotContain("<w:i");
+    }
+
+    @Test
+    void transform_withNonItalicOrNonRunProperties_shouldCopyUnchanged() throws IOException {
+        String xml = "<w:document " + W + "><w:body><w:p>"
+                + "<w:pPr><w:rPr><w:i/></w:rPr></w:pPr>"
+                + "<w:r><w:rPr><w:i w:val=\"0\"/><w:rPrChange w:id=\"1\"><w:rPr><w:i/></w:rPr></w:rPrChange></w:rPr>"
+                + "<w:t>x</w:t></w:r></w:p></w:body></w:document>";
+
+        assertThat(transform(xml)).isEqualTo(xml);
+    }
+
+    @Test
+    void transform_withRunsInTablesAndTextBoxes_shouldConvertThem() throws IOException {
+        String xml = "<w:document " + W + " xmlns:v=\"urn:schemas-microsoft-com:vml\"><w:body>"
+                + "<w:tbl><w:tr><w:tc><w:p><w:r><w:rPr><w:i/></w:rPr><w:t>cell</w:t></w:r></w:p></w:tc></w:tr></w:tbl>"
+                + "<w:p><w:r><w:pict><v:shape><v:textbox><w:txbxContent>"
+                + "<w:p><w:r><w:rPr><w:i/></w:rPr><w:t>box</w:t></w:r></w:p>"
+                + "</w:txbxContent></v:textbox></v:shape></w:pict></w:r></w:p></w:body></w:document>";
+
+        String result = transform(xml);
+
+        assertThat(result).doesNotContain("<w:i/>");
+        assertThat(result.split("<w:rPr><w:u w:val=\"single\"/></w:rPr>", -1)).hasSize(3);
+    }
+
+    @Test
+    void processDocument_withItalicToUnderline_shouldConvertRunsAndKeepOtherProperties(@TempDir Path tempDir)
+            throws IOException {
+        File input = tempDir.resolve("input.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            paragraph.createRun().setText("Plain ");
+            XWPFRun italic = paragraph.createRun();
+            italic.setText("emphasis");
+            italic.setItalic(true);
+            italic.setColor("3366FF");
+            italic.setFontFamily("Courier New");
+            try (FileOutputStream out = new FileOutputStream(input)) {
+                document.write(out);
+            }
+        }
+        File output = tempDir.resolve("output.docx").toFile();
+
+        service.processDocument(new ConvertRequest(input, output, null, new FormattingPrefs(true)));
+
+        try (FileInputStream in = new FileInputStream(output);
+             XWPFDocument document = new XWPFDocument(in)) {
+            XWPFParagraph paragraph = document.getParagraphs().get(0);
+            assertThat(paragraph.getText()).isEqualTo("Plain emphasis");
+            XWPFRun run = paragraph.getRuns().get(1);
+            assertThat(run.isItalic()).isFalse();
+            assertThat(run.getUnderline()).isEqualTo(UnderlinePatterns.SINGLE);
+            assertThat(run.getColor()).isEqualTo("3366FF");
+            assertThat(run.getFontFamily()).isEqualTo("Courier New");
+            assertThat(paragraph.getRuns().get(0).getUnderline()).isEqualTo(UnderlinePatterns.NONE);
+        }
+        assertThat(entryBytes(output, "word/settings.xml")).isEqualTo(entryBytes(input, "word/settings.xml"));
+    }
+
+    @Test
+    void processDocument_withItalicToUnderline_shouldCoverHeadersFootersNotesAndTables(@TempDir Path tempDir)
+            throws IOException {
+        File input = tempDir.resolve("input.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument()) {
+            italicRun(document.createParagraph(), "Body");
+            italicRun(document.createHeader(HeaderFooterType.DEFAULT).createParagraph(), "Header");
+            italicRun(document.createFooter(HeaderFooterType.DEFAULT).createParagraph(), "Footer");
+            italicRun(document.createFootnote().createParagraph(), "Note");
+            italicRun(document.createTable(1, 1).getRow(0).getCell(0).getParagraphs().get(0), "Cell");
+            try (FileOutputStream out = new FileOutputStream(input)) {
+                document.write(out);
+            }
+        }
+        File output = tempDir.resolve("output.docx").toFile();
+
+        service.processDocument(new ConvertRequest(input, output, null, new FormattingPrefs(true)));
+
+        try (FileInputStream in = new FileInputStream(output);
+             XWPFDocument document = new XWPFDocument(in)) {
+            assertUnderlined(document.getParagraphs().get(0));
+            assertUnderlined(document.getHeaderList().get(0).getParagraphs().get(0));
+            assertUnderlined(document.getFooterList().get(0).getParagraphs().get(0));
+            assertUnderlined(document.getFootnotes().get(document.getFootnotes().size() - 1).getParagraphs().get(0));
+            assertUnderlined(document.getTables().get(0).getRow(0).getCell(0).getParagraphs().get(0));
+        }
+    }
+
+    @Test
+    void processDocument_withSeveralTransforms_shouldApplyAllInOnePass(@TempDir Path tempDir) throws IOException {
+        File input = tempDir.resolve("input.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            paragraph.createRun().setText("She said \"");
+            italicRun(paragraph, "wait");
+            paragraph.createRun().setText("...\" -- then left.");
+            try (FileOutputStream out = new FileOutputStream(input)) {
+                document.write(out);
+            }
+        }
+        File output = tempDir.resolve("output.docx").toFile();
+
+        Map<String, Long> timings = service.processDocument(new ConvertRequest(input, output, null, null,
+                List.of(new DocxTransform.ItalicToUnderline(), new DocxTransform.Typography("EN"))));
+
+        assertThat(timings).containsOnlyKeys("parse", "italic_to_underline", "typography", "serialize");
+        try (FileInputStream in = new FileInputStream(output);
+             XWPFDocument document = new XWPFDocument(in)) {
+            XWPFParagraph paragraph = document.getParagraphs().get(0);
+            assertThat(paragraph.getText()).isEqualTo(TypographyEngine.forProfile("EN")
+                    .clean("She said \"wait...\" -- then left."));
+            assertUnderlined(paragraph.getRuns().get(1));
+        }
+    }
+
+    @Test
+    void processDocument_withShunnFormat_shouldAddFrontMatterHeaderAndSceneBreaks(@TempDir Path tempDir)
+            throws IOException {
+        File input = tempDir.resolve("input.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFRun run = document.createParagraph().createRun();
+            run.setText("It was a dark night.");
+            run.setFontFamily("Arial");
+            run.setFontSize(10);
+            document.createParagraph().createRun().setText("* * *");
+            document.createParagraph().createRun().setText("Morning came.");
+            try (FileOutputStream out = new FileOutputStream(input)) {
+                document.write(out);
+            }
+        }
+        AuthorMeta authorMeta = new AuthorMeta("Jane Writer", "12 Main St; Springfield", "jane@example.com",
+                "555-1234", "The Long Night", "2345");
+        List<DocxTransform> transforms = List.of(new DocxTransform.ShunnFormat(authorMeta, ManuscriptFont.COURIER));
+        File output = tempDir.resolve("output.docx").toFile();
+        File rerun = tempDir.resolve("rerun.docx").toFile();
+
+        service.processDocument(new ConvertRequest(input, output, authorMeta, null, transforms));
+        service.processDocument(new ConvertRequest(output, rerun, authorMeta, null, transforms));
+
+        for (File file : List.of(output, rerun)) {
+            try (FileInputStream in = new FileInputStream(file);
+                 XWPFDocument document = new XWPFDocument(in)) {
+                List<XWPFParagraph> paragraphs = document.getParagraphs();
+                assertThat(paragraphs).extracting(XWPFParagraph::getText).containsExactly(
+                        "Jane Writer\tabout 2,345 words", "12 Main St", "Springfield", "555-1234",
+                        "jane@example.com", "The Long Night", "by Jane Writer",
+                        "It was a dark night.", "#", "Morning came.", "END");
+                assertThat(paragraphs.get(0).getStyleID()).isEqualTo("ShunnContact");
+                assertThat(paragraphs.get(5).getStyleID()).isEqualTo("ShunnTitle");
+                assertThat(paragraphs.get(8).getStyleID()).isEqualTo("ShunnSceneBreak");
+                XWPFRun run = paragraphs.get(7).getRuns().get(0);
+                assertThat(run.getFontFamily()).isNull();
+                assertThat(run.getFontSizeAsDouble()).isNull();
+                assertThat(document.getHeaderList()).hasSize(1);
+                assertThat(document.getHeaderFooterPolicy().getDefaultHeader().getText().trim())
+                        .isEqualTo("Writer / The Long Night / 1");
+            }
+        }
+        assertThat(new String(entryBytes(output, "word/styles.xml"), StandardCharsets.UTF_8))
+                .contains("Courier New");
+    }
+
+    @Test
+    void processDocument_withShunnFormat_shouldKeepStylesTheTemplateDoesNotDefine(@TempDir Path tempDir)
+            throws Exception {
+        File input = tempDir.resolve("input.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument()) {
+            document.createStyles().setStyles(StylesDocument.Factory.parse("<w:styles " + W + ">"
+                    + "<w:docDefaults><w:rPrDefault><w:rPr><w:rFonts w:ascii=\"Arial\" w:hAnsi=\"Arial\"/>"
+                    + "</w:rPr></w:rPrDefault></w:docDefaults>"
+                    + "<w:style w:type=\"paragraph\" w:default=\"1\" w:styleId=\"Normal\"><w:name w:val=\"Normal\"/>"
+                    + "<w:pPr><w:jc w:val=\"both\"/></w:pPr></w:style>"
+                    + "<w:style w:type=\"character\" w:default=\"1\" w:styleId=\"DefaultParagraphFont\">"
+                    + "<w:name w:val=\"Default Paragraph Font\"/></w:style>"
+                    + "<w:style w:type=\"paragraph\" w:styleId=\"Heading1\"><w:name w:val=\"heading 1\"/>"
+                    + "<w:basedOn w:val=\"Normal\"/><w:rPr><w:b/></w:rPr></w:style>"
+                    + "<w:style w:type=\"character\" w:styleId=\"Emphasis\"><w:name w:val=\"Emphasis\"/>"
+                    + "<w:rPr><w:i/></w:rPr></w:style>"
+                    + "</w:styles>").getStyles());
+            XWPFParagraph heading = document.createParagraph();
+            heading.setStyle("Heading1");
+            heading.createRun().setText("Chapter One");
+            XWPFRun run = document.createParagraph().createRun();
+            run.setText("Stressed");
+            run.setStyle("Emphasis");
+            try (FileOutputStream out = new FileOutputStream(input)) {
+                document.write(out);
+            }
+        }
+        AuthorMeta authorMeta = new AuthorMeta("Jane Writer", null, null, null, "The Long Night", null);
+        List<DocxTransform> transforms = List.of(new DocxTransform.ShunnFormat(authorMeta, ManuscriptFont.COURIER));
+        File output = tempDir.resolve("output.docx").toFile();
+        File rerun = tempDir.resolve("rerun.docx").toFile();
+
+        service.processDocument(new ConvertRequest(input, output, authorMeta, null, transforms));
+        service.processDocument(new ConvertRequest(output, rerun, authorMeta, null, transforms));
+
+        for (File file : List.of(output, rerun)) {
+            try (FileInputStream in = new FileInputStream(file);
+                 XWPFDocument document = new XWPFDocument(in)) {
+                List<XWPFParagraph> paragraphs = document.getParagraphs();
+                XWPFParagraph heading = paragraphs.stream()
+                        .filter(paragraph -> paragraph.getText().equals("Chapter One")).findFirst().orElseThrow();
+                XWPFParagraph stressed = paragraphs.stream()
+                        .filter(paragraph -> paragraph.getText().equals("Stressed")).findFirst().orElseThrow();
+                assertThat(heading.getStyleID()).isEqualTo("Heading1");
+                assertThat(stressed.getRuns().get(0).getStyle()).isEqualTo("Emphasis");
+            }
+            String styles = new String(entryBytes(file, "word/styles.xml"), StandardCharsets.UTF_8);
+            assertThat(styles).contains("<w:name w:val=\"heading 1\"/><w:basedOn w:val=\"Normal\"/><w:rPr><w:b/></w:rPr>");
+            assertThat(styles).contains("<w:name w:val=\"Emphasis\"/><w:rPr><w:i/></w:rPr>");
+            assertThat(styles).contains("Courier New").doesNotContain("Arial").doesNotContain("<w:jc w:val=\"both\"/>");
+            for (String styleId : List.of("Normal", "DefaultParagraphFont", "Heading1", "Emphasis", "ShunnTitle")) {
+                assertThat(styles.split("w:styleId=\"" + styleId + "\"", -1)).as(styleId).hasSize(2);
+            }
+        }
+    }
+
+    @Test
+    void wordCount_shouldOnlyRoundOffGroupedIntegers() {
+        assertThat(ShunnFormatter.wordCount("2345")).isEqualTo("about 2,345 words");
+        assertThat(ShunnFormatter.wordCount(" 2,345 ")).isEqualTo("about 2,345 words");
+        assertThat(ShunnFormatter.wordCount("1.234.567")).isEqualTo("about 1,234,567 words");
+        assertThat(ShunnFormatter.wordCount("2 500")).isEqualTo("about 2,500 words");
+        assertThat(ShunnFormatter.wordCount("1.5")).isEqualTo("1.5");
+        assertThat(ShunnFormatter.wordCount("2 500 7")).isEqualTo("2 500 7");
+        assertThat(ShunnFormatter.wordCount("2,500.000")).isEqualTo("2,500.000");
+        assertThat(ShunnFormatter.wordCount("99999999999999999999")).isEqualTo("99999999999999999999");
+        assertThat(ShunnFormatter.wordCount("novelette")).isEqualTo("novelette");
+        assertThat(ShunnFormatter.wordCount(" ")).isNull();
+    }
+
+    @Test
+    void processDocument_inLargeDocumentMode_shouldSpillPartsAndCleanUp(@TempDir Path tempDir) throws IOException {
+        File input = tempDir.resolve("input.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument()) {
+            italicRun(document.createParagraph(), "Body");
+            italicRun(document.createHeader(HeaderFooterType.DEFAULT).createParagraph(), "Header");
+            try (FileOutputStream out = new FileOutputStream(input)) {
+                document.write(out);
+            }
+        }
+        Path spill = tempDir.resolve("spill");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        DocxProcessingService largeService = new DocxProcessingService(executor, 1, spill);
+        File output = tempDir.resolve("output.docx").toFile();
+
+        try {
+            assertThat(largeService.isLargeDocument(input)).isTrue();
+            largeService.processDocument(new ConvertRequest(input, output, null, new FormattingPrefs(true)));
+        } finally {
+            executor.shutdown();
+        }
+
+        try (FileInputStream in = new FileInputStream(output);
+             XWPFDocument document = new XWPFDocument(in)) {
+            assertUnderlined(document.getParagraphs().get(0));
+            assertUnderlined(document.getHeaderList().get(0).getParagraphs().get(0));
+        }
+        assertThat(spill).isEmptyDirectory();
+        assertThat(service.isLargeDocument(input)).isFalse();
+    }
+
+    @Test
+    void processDocument_withoutFormattingPrefs_shouldCopyInput(@TempDir Path tempDir) throws IOException {
+        Path input = tempDir.resolve("input.docx");
+        try (XWPFDocument document = new XWPFDocument()) {
+            italicRun(document.createParagraph(), "Body");
+            try (FileOutputStream out = new FileOutputStream(input.toFile())) {
+                document.write(out);
+            }
+        }
+        Path output = tempDir.resolve("output.docx");
+
+        service.processDocument(new ConvertRequest(input.toFile(), output.toFile(), null, null));
+
+        assertThat(output).hasSameBinaryContentAs(input);
+    }
+
+    @Test
+    void processDocument_withoutFormattingPrefs_shouldRejectOtherFormats(@TempDir Path tempDir) throws IOException {
+        Path input = tempDir.resolve("input.odt");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(input))) {
+            out.putNextEntry(new ZipEntry("mimetype"));
+            out.write("application/vnd.oasis.opendocument.text".getBytes(StandardCharsets.UTF_8));
+        }
+        Path output = tempDir.resolve("output.docx");
+
+        assertThatThrownBy(() -> service.processDocument(
+                new ConvertRequest(input.toFile(), output.toFile(), null, null)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Not a DOCX document");
+        assertThat(output).doesNotExist();
+    }
+
+    private static void italicRun(XWPFParagraph paragraph, String text) {
+        XWPFRun run = paragraph.createRun();
+        run.setText(text);
+        run.setItalic(true);
+    }
+
+    private static void assertUnderlined(XWPFParagraph paragraph) {
+        // Footnote paragraphs start with the run holding the note reference mark
+        assertUnderlined(paragraph.getRuns().get(paragraph.getRuns().size() - 1));
+    }
+
+    private static void assertUnderlined(XWPFRun run) {
+        assertThat(run.isItalic()).as(run.text()).isFalse();
+        assertThat(run.getUnderline()).as(run.text()).isEqualTo(UnderlinePatterns.SINGLE);
+    }
+
+    private static String transform(String xml) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ItalicToUnderlineTransformer().transform(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), out);
+        String result = out.toString(StandardCharsets.UTF_8);
+        // The writer adds an XML declaration when the input has none
+        return result.substring(result.indexOf("?>\r\n") + 4);
+    }
+
+    private static byte[] entryBytes(File docx, String name) throws IOException {
+        try (ZipFile zip = new ZipFile(docx)) {
+            return zip.getInputStream(zip.getEntry(name)).readAllBytes();
+        }
+    }
+}
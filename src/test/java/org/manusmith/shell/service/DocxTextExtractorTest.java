@@ -0,0 +1,163 @@
+package org.manusmith.shell.service;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Test suite for DocxTextExtractor
+ */
+class DocxTextExtractorTest {
+
+    private static final String MEDIA_PART = "word/media/image1.png";
+
+    private final DocxTextExtractor extractor = new DocxTextExtractor();
+
+    @Test
+    void extractText_shouldJoinRunsAndWriteTabsBreaksAndParagraphs(@TempDir Path tempDir) throws IOException {
+        File input = tempDir.resolve("input.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            paragraph.createRun().setText("Hel");
+            XWPFRun run = paragraph.createRun();
+            run.setItalic(true);
+            run.setText("lo  ");
+            run.addTab();
+            run.setText("tabbed");
+            run.addBreak();
+            run.setText("after <break> & more");
+            document.createParagraph();
+            document.createParagraph().createRun().setText("Last");
+            try (FileOutputStream out = new FileOutputStream(input)) {
+                document.write(out);
+            }
+        }
+        StringWriter text = new StringWriter();
+
+        long written = extractor.extractText(input, text);
+
+        assertThat(text.toString()).isEqualTo("Hello  \ttabbed\nafter <break> & more\n\nLast\n");
+        assertThat(written).isEqualTo(text.toString().length());
+    }
+
+    @Test
+    void extractText_withTable_shouldSeparateCellsWithTabs(@TempDir Path tempDir) throws IOException {
+        File input = tempDir.resolve("input.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFTable table = document.createTable(2, 2);
+            table.getRow(0).getCell(0).setText("a");
+            table.getRow(0).getCell(1).setText("b");
+            table.getRow(1).getCell(0).setText("c");
+            table.getRow(1).getCell(1).setText("d");
+            document.createParagraph().createRun().setText("After");
+            try (FileOutputStream out = new FileOutputStream(input)) {
+                document.write(out);
+            }
+        }
+        StringWriter text = new StringWriter();
+
+        extractor.extractText(input, text);
+
+        assertThat(text.toString()).isEqualTo("a\tb\nc\td\nAfter\n");
+    }
+
+    @Test
+    void extractText_shouldSkipDeletedTextFieldCodesAndTextBoxFallbacks(@TempDir Path tempDir) throws IOException {
+        String w = RunProperties.WORDML_NS;
+        String mc = "http://schemas.openxmlformats.org/markup-compatibility/2006";
+        String xml = "<w:document xmlns:w=\"" + w + "\" xmlns:mc=\"" + mc + "\"><w:body><w:p>"
+                + "<w:r><w:t xml:space=\"preserve\">Kept </w:t></w:r>"
+                + "<w:del><w:r><w:delText>gone</w:delText></w:r></w:del>"
+                + "<w:r><w:instrText>PAGE</w:instrText></w:r>"
+                + "<w:r><mc:AlternateContent><mc:Choice Requires=\"wps\"><w:txbxContent><w:p><w:r><w:t>box</w:t></w:r></w:p>"
+                + "</w:txbxContent></mc:Choice><mc:Fallback><w:txbxContent><w:p><w:r><w:t>box</w:t></w:r></w:p>"
+                + "</w:txbxContent></mc:Fallback></mc:AlternateContent></w:r>"
+                + "<w:r><w:t>text</w:t></w:r></w:p></w:body></w:document>";
+        File input = tempDir.resolve("input.docx").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(input))) {
+            out.putNextEntry(new ZipEntry("[Content_Types].xml"));
+            out.write(("<Types><Override PartName=\"/word/document.xml\" ContentType=\""
+                    + "application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/></Types>")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("word/document.xml"));
+            out.write(xml.getBytes(StandardCharsets.UTF_8));
+        }
+        StringWriter text = new StringWriter();
+
+        extractor.extractText(input, text);
+
+        assertThat(text.toString()).isEqualTo("Kept box\ntext\n");
+    }
+
+    @Test
+    void readText_withMediaPart_shouldNeverReadTheMedia(@TempDir Path tempDir) throws IOException {
+        File document = tempDir.resolve("document.docx").toFile();
+        try (XWPFDocument docx = new XWPFDocument()) {
+            docx.createParagraph().createRun().setText("Caption");
+            try (FileOutputStream out = new FileOutputStream(document)) {
+                docx.write(out);
+            }
+        }
+        Path input = tempDir.resolve("input.docx");
+        try (ZipFile source = ZipFile.builder().setFile(document).get();
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(input))) {
+            for (ZipArchiveEntry entry : Collections.list(source.getEntries())) {
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                source.getInputStream(entry).transferTo(out);
+            }
+            out.putNextEntry(new ZipEntry(MEDIA_PART));
+            out.write(new byte[64 * 1024]);
+        }
+        // Overwrite the deflated image with bytes that cannot be inflated, so that any read of it fails
+        long offset;
+        long length;
+        try (ZipFile zip = ZipFile.builder().setPath(input).get()) {
+            ZipArchiveEntry media = zip.getEntry(MEDIA_PART);
+            offset = media.getDataOffset();
+            length = media.getCompressedSize();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(input.toFile(), "rw")) {
+            file.seek(offset);
+            byte[] garbage = new byte[(int) length];
+            Arrays.fill(garbage, (byte) 0xFF);
+            file.write(garbage);
+        }
+
+        String text = new DocxReaderService().readText(input.toFile());
+
+        assertThat(text).isEqualTo("Caption\n");
+    }
+
+    @Test
+    void extractText_withoutMainPart_shouldThrowIOException(@TempDir Path tempDir) throws IOException {
+        Path input = tempDir.resolve("input.docx");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(input))) {
+            out.putNextEntry(new ZipEntry("word/styles.xml"));
+            out.write("<w:styles/>".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThatThrownBy(() -> extractor.extractText(input.toFile(), new StringWriter()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Not a DOCX document");
+    }
+}
@@ -0,0 +1,75 @@
+package org.manusmith.shell.service;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Test suite for DocxTextWriter
+ */
+class DocxTextWriterTest {
+
+    private final DocxTextWriter docxWriter = new DocxTextWriter();
+
+    @Test
+    void writeText_shouldWriteOneParagraphPerLineAndPreserveSpaces(@TempDir Path tempDir) throws IOException {
+        File output = tempDir.resolve("output.docx").toFile();
+
+        long paragraphs = docxWriter.writeText(new StringReader("  Indented  twice\n\nA & B <c> \"d\"\r\nWindows\rOld Mac"),
+                output);
+
+        assertThat(paragraphs).isEqualTo(5);
+        try (FileInputStream in = new FileInputStream(output);
+             XWPFDocument document = new XWPFDocument(in)) {
+            assertThat(document.getParagraphs()).extracting(XWPFParagraph::getText).containsExactly(
+                    "  Indented  twice", "", "A & B <c> \"d\"", "Windows", "Old Mac");
+            assertThat(document.getStyles().getStyle("Normal")).isNotNull();
+        }
+    }
+
+    @Test
+    void writeText_shouldDropCharactersXmlDoesNotAllowAndKeepSurrogatePairs(@TempDir Path tempDir) throws IOException {
+        File output = tempDir.resolve("output.docx").toFile();
+
+        docxWriter.writeText(new StringReader("bell\u0007 null\u0000 emoji 😀 lone \uD800!\uFFFF"), output);
+
+        try (FileInputStream in = new FileInputStream(output);
+             XWPFDocument document = new XWPFDocument(in)) {
+            assertThat(document.getParagraphs().get(0).getText()).isEqualTo("bell null emoji 😀 lone !");
+        }
+    }
+
+    @Test
+    void writeText_withTabsAndFormFeeds_shouldRoundTripThroughExtractor(@TempDir Path tempDir) throws IOException {
+        File output = tempDir.resolve("output.docx").toFile();
+        String text = "Name\tValue\nChapter One\fChapter Two\n";
+
+        docxWriter.writeText(new StringReader(text), output);
+        StringWriter extracted = new StringWriter();
+        new DocxTextExtractor().extractText(output, extracted);
+
+        assertThat(extracted.toString()).isEqualTo("Name\tValue\nChapter One\nChapter Two\n");
+    }
+
+    @Test
+    void writeText_withEmptyText_shouldWriteSingleEmptyParagraph(@TempDir Path tempDir) throws IOException {
+        File output = tempDir.resolve("output.docx").toFile();
+
+        assertThat(docxWriter.writeText(new StringReader(""), output)).isEqualTo(1);
+
+        try (FileInputStream in = new FileInputStream(output);
+             XWPFDocument document = new XWPFDocument(in)) {
+            assertThat(document.getParagraphs()).hasSize(1);
+        }
+    }
+}
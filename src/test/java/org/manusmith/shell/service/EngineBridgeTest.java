@@ -27,6 +27,7 @@ class EngineBridgeTest {
         // Reset singletons for clean tests
         ConfigurationService.instance = null;
         MetricsService.instance = null;
+        CleaningResultCache.instance = null;
         this.engineBridge = new EngineBridge();
     }
 
@@ -145,6 +146,42 @@ class EngineBridgeTest {
         assertThat(result).contains("…"); // ellipsis should be applied
     }
 
+    @Test
+    void cleanText_withAlreadyCleanText_shouldReturnSameInstanceAndCountSkip() {
+        String inputText = "Plain text, with don't and a-hyphen. Nothing to fix here";
+
+        String result = engineBridge.cleanText(inputText, "HU");
+
+        assertThat(result).isSameAs(inputText);
+        double skipped = MetricsService.getInstance().getMeterRegistry()
+                .find("text.cleaning.skipped").counters().stream()
+                .mapToDouble(c -> c.count())
+                .sum();
+        assertThat(skipped).isEqualTo(1);
+    }
+
+    @Test
+    void cleanText_shouldRecordRuleHitsForTheProfile() {
+        engineBridge.cleanText("Wait... what... now", "EN");
+
+        io.micrometer.core.instrument.Counter ellipsis = MetricsService.getInstance().getMeterRegistry()
+                .find("text.cleaning.rule.hits").tags("profile", "EN", "rule", "ellipsis").counter();
+        assertThat(ellipsis).isNotNull();
+        assertThat(ellipsis.count()).isEqualTo(2);
+        assertThat(MetricsService.getInstance().getMeterRegistry()
+                .find("text.cleaning.rule.hits").tags("profile", "EN", "rule", "scene_break").counter()).isNull();
+    }
+
+    @Test
+    void cleanText_withReaderAndWriter_shouldMatchStringResult() throws IOException {
+        String inputText = "This has \"quotes\" and 'inner quotes' and -- dashes...";
+        java.io.StringWriter writer = new java.io.StringWriter();
+
+        engineBridge.cleanText(new java.io.StringReader(inputText), writer, "EN");
+
+        assertThat(writer.toString()).isEqualTo(engineBridge.cleanText(inputText, "EN"));
+    }
+
     @Test
     void quickConvert_withNullInputFile_shouldThrowException() {
         File outputFile = new File("output.txt");
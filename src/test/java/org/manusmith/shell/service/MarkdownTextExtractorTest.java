@@ -0,0 +1,88 @@
+package org.manusmith.shell.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Test suite for MarkdownTextExtractor
+ */
+class MarkdownTextExtractorTest {
+
+    private final MarkdownTextExtractor extractor = new MarkdownTextExtractor();
+
+    @Test
+    void extractText_shouldDropMarkupAndKeepLineStructure(@TempDir Path tempDir) throws IOException {
+        File input = markdown(tempDir, "# Title\n\nThis is **bold** and *italic* text with `code`.\nNext line\n\n"
+                + "- one\n- two\n\n> quoted\n");
+        StringWriter text = new StringWriter();
+
+        long written = extractor.extractText(input, text);
+
+        assertThat(text.toString()).isEqualTo(
+                "Title\nThis is bold and italic text with code.\nNext line\none\ntwo\nquoted\n");
+        assertThat(written).isEqualTo(text.toString().length());
+    }
+
+    @Test
+    void extractText_shouldResolveEscapesAndSkipHtmlAndReferences(@TempDir Path tempDir) throws IOException {
+        File input = markdown(tempDir, "Fish \\& chips &amp; 5 \\* 2 [link](http://example.com) <span>x</span>\n\n"
+                + "```\nraw \\* code\n```\n\n<div>html</div>\n\n[ref]: http://example.com\n");
+        StringWriter text = new StringWriter();
+
+        extractor.extractText(input, text);
+
+        assertThat(text.toString()).isEqualTo("Fish & chips & 5 * 2 link x\nraw \\* code\n");
+    }
+
+    @Test
+    void extractText_ofEmptyFile_shouldWriteNothing(@TempDir Path tempDir) throws IOException {
+        StringWriter text = new StringWriter();
+
+        assertThat(extractor.extractText(markdown(tempDir, ""), text)).isZero();
+        assertThat(text.toString()).isEmpty();
+    }
+
+    @Test
+    void extractText_fromSeveralThreads_shouldShareTheParser(@TempDir Path tempDir) throws Exception {
+        File input = markdown(tempDir, "## Section\n\nSome *content* here.\n".repeat(200));
+        StringWriter expected = new StringWriter();
+        extractor.extractText(input, expected);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(executor.submit(() -> {
+                    StringWriter text = new StringWriter();
+                    extractor.extractText(input, text);
+                    return text.toString();
+                }));
+            }
+            for (Future<String> result : results) {
+                assertThat(result.get()).isEqualTo(expected.toString());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static File markdown(Path tempDir, String content) throws IOException {
+        File file = tempDir.resolve("input.md").toFile();
+        Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
@@ -0,0 +1,97 @@
+package org.manusmith.shell.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Test suite for OdtTextExtractor
+ */
+class OdtTextExtractorTest {
+
+    private static final String NAMESPACES = " xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\""
+            + " xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\""
+            + " xmlns:table=\"urn:oasis:names:tc:opendocument:xmlns:table:1.0\""
+            + " xmlns:dc=\"http://purl.org/dc/elements/1.1/\"";
+
+    private final OdtTextExtractor extractor = new OdtTextExtractor();
+
+    @Test
+    void extractText_shouldCoverHeadingsListsSpacesTabsAndLineBreaks(@TempDir Path tempDir) throws IOException {
+        File input = odt(tempDir, "<text:h text:outline-level=\"1\">Chapter One</text:h>\n"
+                + "  <text:p>First<text:s text:c=\"3\"/>line<text:tab/>tabbed<text:line-break/>second line</text:p>\n"
+                + "  <text:list><text:list-item><text:p>Item one</text:p></text:list-item>"
+                + "<text:list-item><text:p>Item two</text:p></text:list-item></text:list>\n"
+                + "  <text:p/>\n"
+                + "  <text:p>Last</text:p>");
+        StringWriter text = new StringWriter();
+
+        long written = extractor.extractText(input, text);
+
+        assertThat(text.toString()).isEqualTo(
+                "Chapter One\nFirst   line\ttabbed\nsecond line\nItem one\nItem two\n\nLast\n");
+        assertThat(written).isEqualTo(text.toString().length());
+    }
+
+    @Test
+    void extractText_shouldCollapseWhiteSpaceLikeOdfApplications(@TempDir Path tempDir) throws IOException {
+        File input = odt(tempDir, "<text:p>\n   Wrapped   source\n   text <text:span>with  span</text:span> </text:p>");
+        StringWriter text = new StringWriter();
+
+        extractor.extractText(input, text);
+
+        assertThat(text.toString()).isEqualTo("Wrapped source text with span\n");
+    }
+
+    @Test
+    void extractText_shouldSeparateTableCellsAndSkipAnnotationsAndNotes(@TempDir Path tempDir) throws IOException {
+        File input = odt(tempDir, "<table:table><table:table-row>"
+                + "<table:table-cell><text:p>a</text:p></table:table-cell>"
+                + "<table:table-cell><text:p>b</text:p></table:table-cell></table:table-row></table:table>"
+                + "<text:p>Text<office:annotation><dc:creator>Ed</dc:creator><text:p>comment</text:p></office:annotation>"
+                + "<text:note><text:note-citation>1</text:note-citation><text:note-body><text:p>note</text:p>"
+                + "</text:note-body></text:note> &amp; more</text:p>");
+        StringWriter text = new StringWriter();
+
+        extractor.extractText(input, text);
+
+        assertThat(text.toString()).isEqualTo("a\tb\nText & more\n");
+    }
+
+    @Test
+    void extractText_withoutContent_shouldThrowIOException(@TempDir Path tempDir) throws IOException {
+        File input = tempDir.resolve("input.odt").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(input))) {
+            out.putNextEntry(new ZipEntry("mimetype"));
+            out.write("application/vnd.oasis.opendocument.text".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThatThrownBy(() -> extractor.extractText(input, new StringWriter()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Not an ODT document");
+    }
+
+    private static File odt(Path tempDir, String body) throws IOException {
+        File file = tempDir.resolve("input.odt").toFile();
+        String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<office:document-content" + NAMESPACES + "><office:body><office:text>\n  "
+                + body + "\n</office:text></office:body></office:document-content>";
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("mimetype"));
+            out.write("application/vnd.oasis.opendocument.text".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry(OdtTextExtractor.CONTENT_PART));
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+}
@@ -0,0 +1,166 @@
+package org.manusmith.shell.service;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Test suite for OoxmlPackage
+ */
+class OoxmlPackageTest {
+
+    @Test
+    void writeTo_shouldCopyUntouchedPartsRawAndRewriteOnlyTransformedOnes(@TempDir Path tempDir) throws IOException {
+        byte[] image = new byte[64 * 1024];
+        new Random(42).nextBytes(image);
+        File input = tempDir.resolve("input.docx").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(input))) {
+            addEntry(out, "[Content_Types].xml", "<Types/>".getBytes(StandardCharsets.UTF_8));
+            addEntry(out, "word/document.xml", "<w:document>text</w:document>".getBytes(StandardCharsets.UTF_8));
+            addEntry(out, "word/media/image1.png", image);
+        }
+        File output = tempDir.resolve("output.docx").toFile();
+
+        try (OoxmlPackage docx = new OoxmlPackage(input)) {
+            assertThat(docx.hasPart("word/document.xml")).isTrue();
+            assertThat(docx.hasPart("word/styles.xml")).isFalse();
+            docx.writeTo(output, part -> part.equals("word/document.xml")
+                    ? (in, out) -> out.write(new String(in.readAllBytes(), StandardCharsets.UTF_8)
+                            .replace("text", "TEXT").getBytes(StandardCharsets.UTF_8))
+                    : null);
+        }
+
+        try (ZipFile in = ZipFile.builder().setFile(input).get();
+             ZipFile out = ZipFile.builder().setFile(output).get()) {
+            assertThat(names(out)).containsExactly("[Content_Types].xml", "word/document.xml", "word/media/image1.png");
+            assertThat(read(out, "word/document.xml")).isEqualTo("<w:document>TEXT</w:document>");
+            assertThat(rawBytes(out, "word/media/image1.png")).isEqualTo(rawBytes(in, "word/media/image1.png"));
+            assertThat(out.getInputStream(out.getEntry("word/media/image1.png")).readAllBytes()).isEqualTo(image);
+        }
+    }
+
+    @Test
+    void writeTo_withExecutor_shouldTransformPartsConcurrentlyAndKeepEntryOrder(@TempDir Path tempDir) throws IOException {
+        File input = tempDir.resolve("input.docx").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(input))) {
+            addEntry(out, "[Content_Types].xml", "<Types/>".getBytes(StandardCharsets.UTF_8));
+            for (int i = 1; i <= 20; i++) {
+                addEntry(out, "word/footer" + i + ".xml", ("<w:ftr>text " + i + "</w:ftr>").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        File sequential = tempDir.resolve("sequential.docx").toFile();
+        File concurrent = tempDir.resolve("concurrent.docx").toFile();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try (OoxmlPackage docx = new OoxmlPackage(input)) {
+            docx.writeTo(sequential, OoxmlPackageTest::upperCaseXml);
+            docx.writeTo(concurrent, OoxmlPackageTest::upperCaseXml, Map.of(), executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        try (ZipFile expected = ZipFile.builder().setFile(sequential).get();
+             ZipFile actual = ZipFile.builder().setFile(concurrent).get()) {
+            assertThat(names(actual)).isEqualTo(names(expected));
+            for (String name : names(expected)) {
+                assertThat(read(actual, name)).isEqualTo(read(expected, name));
+            }
+            assertThat(read(actual, "word/footer20.xml")).isEqualTo("<W:FTR>TEXT 20</W:FTR>");
+        }
+    }
+
+    @Test
+    void writeTo_withSpillDirectory_shouldBufferPartsOnDiskAndDeleteThem(@TempDir Path tempDir) throws IOException {
+        File input = tempDir.resolve("input.docx").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(input))) {
+            for (int i = 1; i <= 5; i++) {
+                addEntry(out, "word/header" + i + ".xml", ("<w:hdr>text " + i + "</w:hdr>").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Path spill = Files.createDirectory(tempDir.resolve("spill"));
+        File output = tempDir.resolve("output.docx").toFile();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try (OoxmlPackage docx = new OoxmlPackage(input, spill)) {
+            docx.writeTo(output, OoxmlPackageTest::upperCaseXml, Map.of(), executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        try (ZipFile out = ZipFile.builder().setFile(output).get()) {
+            assertThat(names(out)).hasSize(5);
+            assertThat(read(out, "word/header3.xml")).isEqualTo("<W:HDR>TEXT 3</W:HDR>");
+        }
+        assertThat(spill).isEmptyDirectory();
+    }
+
+    @Test
+    void writeTo_withExecutorAndFailingTransform_shouldThrowIOException(@TempDir Path tempDir) throws IOException {
+        File input = tempDir.resolve("input.docx").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(input))) {
+            addEntry(out, "word/header1.xml", "<w:hdr/>".getBytes(StandardCharsets.UTF_8));
+            addEntry(out, "word/header2.xml", "<w:hdr/>".getBytes(StandardCharsets.UTF_8));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try (OoxmlPackage docx = new OoxmlPackage(input)) {
+            assertThatThrownBy(() -> docx.writeTo(tempDir.resolve("output.docx").toFile(), part -> (in, out) -> {
+                throw new IOException("broken " + part);
+            }, Map.of(), executor)).isInstanceOf(IOException.class).hasMessageStartingWith("broken word/header");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static OoxmlPackage.PartTransformer upperCaseXml(String part) {
+        return part.endsWith(".xml") && !part.equals(OoxmlPackage.CONTENT_TYPES_PART)
+                ? (in, out) -> out.write(new String(in.readAllBytes(), StandardCharsets.UTF_8)
+                        .toUpperCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8))
+                : null;
+    }
+
+    private static void addEntry(ZipOutputStream out, String name, byte[] content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private static List<String> names(ZipFile zip) {
+        List<String> names = new ArrayList<>();
+        zip.getEntriesInPhysicalOrder().asIterator().forEachRemaining(entry -> names.add(entry.getName()));
+        return names;
+    }
+
+    private static String read(ZipFile zip, String name) throws IOException {
+        try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] rawBytes(ZipFile zip, String name) throws IOException {
+        ZipArchiveEntry entry = zip.getEntry(name);
+        try (InputStream in = zip.getRawInputStream(entry)) {
+            return in.readAllBytes();
+        }
+    }
+}
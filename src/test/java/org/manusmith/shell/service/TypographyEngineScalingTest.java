@@ -0,0 +1,107 @@
+package org.manusmith.shell.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Scaling tests for TypographyEngine on adversarial inputs. Each input is cleaned at three sizes,
+ * each double the previous one, and the best-of-several time must grow roughly linearly; a
+ * quadratic algorithm would grow by a factor of four per doubling.
+ * <p>
+ * Wall-clock ratios are slow to measure and noisy on shared machines, so these tests are left
+ * out of the default build and run with {@code mvn -Pperformance test}.
+ */
+@Tag("performance")
+class TypographyEngineScalingTest {
+
+    private static final int BASE_SIZE = 1 << 20;
+    private static final int RUNS = 7;
+    private static final double MAX_GROWTH_PER_DOUBLING = 3.0;
+
+    static Stream<Arguments> adversarialInputs() {
+        return Stream.of(
+                input("blank lines", n -> "x" + "\n".repeat(n - 1)),
+                input("whitespace lines before a marker", n -> " \t\n".repeat(n / 3) + "***"),
+                input("unbalanced quotes", n -> " \"a 'b".repeat(n / 6) + " \"open"),
+                input("apostrophes without openers", n -> "don't".repeat(n / 5)),
+                input("long word-bound dash run", n -> "a" + "-".repeat(n - 2) + "a"),
+                input("long spaced dash run", n -> " " + "-".repeat(n - 2) + " "),
+                input("long dot run", n -> ".".repeat(n)),
+                input("marker lines", n -> "\n***".repeat(n / 4)),
+                input("near-miss scene breaks", n -> "\n ---x".repeat(n / 6)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("adversarialInputs")
+    void clean_withAdversarialInput_shouldScaleLinearly(String name, IntFunction<String> generator) {
+        for (String profile : new String[] {"HU", "EN", "Shunn"}) {
+            TypographyEngine engine = TypographyEngine.forProfile(profile);
+
+            assertLinear(profile + ", " + name, generator, engine::clean);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("adversarialInputs")
+    void cleanStream_withAdversarialInput_shouldScaleLinearly(String name, IntFunction<String> generator,
+                                                              @TempDir Path tempDir) {
+        TypographyEngine engine = TypographyEngine.forProfile("HU");
+
+        assertLinear(name, generator, text -> {
+            try {
+                engine.clean(new StringReader(text), Writer.nullWriter(), tempDir);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return null;
+        });
+    }
+
+    private static void assertLinear(String description, IntFunction<String> generator,
+                                     Function<String, ?> cleaner) {
+        // Warm up so the first size is not measured in the interpreter
+        String warmup = generator.apply(BASE_SIZE);
+        for (int i = 0; i < 3; i++) {
+            cleaner.apply(warmup);
+        }
+
+        long previous = bestTime(generator.apply(BASE_SIZE), cleaner);
+        for (int size = 2 * BASE_SIZE; size <= 4 * BASE_SIZE; size *= 2) {
+            long current = bestTime(generator.apply(size), cleaner);
+
+            assertThat((double) current / previous)
+                    .as("%s: growth from %d to %d chars", description, size / 2, size)
+                    .isLessThan(MAX_GROWTH_PER_DOUBLING);
+            previous = current;
+        }
+    }
+
+    private static long bestTime(String text, Function<String, ?> cleaner) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            // Keep collections of the previous run's garbage out of the measurement
+            System.gc();
+            long start = System.nanoTime();
+            cleaner.apply(text);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static Arguments input(String name, IntFunction<String> generator) {
+        return Arguments.of(name, generator);
+    }
+}
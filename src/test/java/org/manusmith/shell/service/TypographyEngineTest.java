@@ -0,0 +1,278 @@
+package org.manusmith.shell.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Test suite for TypographyEngine. The engine must produce exactly what the original chain of
+ * regex replacements produced, so most tests compare against that chain directly.
+ */
+class TypographyEngineTest {
+
+    private static final String[] PROFILES = {"HU", "DE", "EN", "Shunn", "UNKNOWN"};
+
+    /**
+     * The original EngineBridge.cleanText implementation, kept as the reference.
+     */
+    static String legacyClean(String text, String profile) {
+        text = text.replaceAll("(?<=\\w)-{2,}(?=\\w)", "—");
+        text = text.replaceAll("(?<=\\s)-{2,}(?=\\s)", " — ");
+        text = text.replaceAll("\\.\\.\\.", "…");
+        switch (profile) {
+            case "HU":
+                text = text.replaceAll(" \"([^\"]*)\"", " „$1”");
+                text = text.replaceAll(" '([^']*)'", " »$1«");
+                text = text.replaceAll(" — ", " – ");
+                break;
+            case "DE":
+                text = text.replaceAll(" \"([^\"]*)\"", " „$1“");
+                text = text.replaceAll(" '([^']*)'", " ‚$1‘");
+                text = text.replaceAll(" — ", " – ");
+                break;
+            case "EN":
+                text = text.replaceAll(" \"([^\"]*)\"", " “$1”");
+                text = text.replaceAll(" '([^']*)'", " ‘$1’");
+                text = text.replaceAll(" – ", "—");
+                break;
+            case "Shunn":
+                text = text.replaceAll("(?m)^\\s*\\*\\*\\*\\s*$", " # ");
+                text = text.replaceAll("(?m)^\\s*---\\s*$", " # ");
+                break;
+            default:
+                break;
+        }
+        return text;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"HU", "DE", "EN", "Shunn", "UNKNOWN"})
+    void clean_withManuscriptText_shouldMatchLegacyRegexChain(String profile) {
+        String text = "She said \"wait -- no...\" and left.\n"
+                + "He muttered 'fine' -- then--nothing.\n"
+                + "\n***\n\n"
+                + "A thought – spaced – and another — here.\n"
+                + "  ---  \r\n"
+                + "Unclosed \"quote and stray 'apostrophe";
+
+        assertThat(TypographyEngine.forProfile(profile).clean(text))
+                .isEqualTo(legacyClean(text, profile));
+    }
+
+    @Test
+    void clean_withRandomInput_shouldMatchLegacyRegexChain() {
+        Random random = new Random(42);
+
+        for (int iteration = 0; iteration < 20_000; iteration++) {
+            String text = randomText(random, random.nextInt(40));
+
+            for (String profile : PROFILES) {
+                assertThat(TypographyEngine.forProfile(profile).clean(text))
+                        .as("profile %s, input [%s]", profile, text)
+                        .isEqualTo(legacyClean(text, profile));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"HU", "DE", "EN", "Shunn", "UNKNOWN"})
+    void cleanStream_withTextLongerThanOneSegment_shouldMatchInMemoryResult(String profile) throws IOException {
+        String text = randomText(new Random(7), 3 * TypographyEngine.STREAM_CHUNK_SIZE);
+        TypographyEngine engine = TypographyEngine.forProfile(profile);
+
+        StringWriter writer = new StringWriter();
+        engine.clean(new StringReader(text), writer, null);
+
+        assertThat(writer.toString()).isEqualTo(engine.clean(text));
+    }
+
+    @Test
+    void cleanStream_withQuoteSpanningSpillThreshold_shouldMatchInMemoryResult(@TempDir Path tempDir) throws IOException {
+        Random random = new Random(11);
+        String text = "Start \"" + randomText(random, 2 * TypographyEngine.STREAM_SPILL_THRESHOLD).replace('"', 'q')
+                + "\" then 'open" + randomText(random, TypographyEngine.STREAM_SPILL_THRESHOLD).replace('\'', 'q')
+                + " and \"never closed";
+        TypographyEngine engine = TypographyEngine.forProfile("HU");
+
+        StringWriter writer = new StringWriter();
+        engine.clean(new StringReader(text), writer, tempDir);
+
+        assertThat(writer.toString()).isEqualTo(engine.clean(text));
+        assertThat(tempDir).isEmptyDirectory();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"HU", "DE", "EN", "Shunn", "UNKNOWN"})
+    void cleanParallel_withTextSpanningManyShards_shouldMatchSequentialResult(String profile) {
+        String text = randomText(new Random(23), 12 * TypographyEngine.MIN_SHARD_SIZE);
+        TypographyEngine engine = TypographyEngine.forProfile(profile);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            assertThat(engine.clean(text, pool)).isEqualTo(engine.clean(text));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void session_afterEditingOneParagraph_shouldRecleanOnlyThatParagraph() {
+        TypographyEngine engine = TypographyEngine.forProfile("HU");
+        TypographyEngine.Session session = engine.newSession();
+        String text = "He said \"wait\n\nand then -- nothing...\n\nshe\" left.\n\nThe end";
+        session.update(text);
+
+        String edited = text.replace("nothing", "something");
+        String result = session.update(edited);
+
+        assertThat(result).isEqualTo(engine.clean(edited));
+        assertThat(session.getLastCleanedParagraphs()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"HU", "DE", "EN", "Shunn", "UNKNOWN"})
+    void session_withRandomEdits_shouldMatchFullClean(String profile) {
+        Random random = new Random(5);
+        TypographyEngine engine = TypographyEngine.forProfile(profile);
+        TypographyEngine.Session session = engine.newSession();
+        StringBuilder text = new StringBuilder(randomText(random, 2000));
+
+        for (int edit = 0; edit < 500; edit++) {
+            int at = random.nextInt(text.length() + 1);
+            if (random.nextBoolean() || text.length() == 0) {
+                text.insert(at, randomText(random, 1 + random.nextInt(4)));
+            } else {
+                text.delete(at, Math.min(text.length(), at + 1 + random.nextInt(4)));
+            }
+
+            String current = text.toString();
+            assertThat(session.update(current))
+                    .as("edit %d", edit)
+                    .isEqualTo(engine.clean(current));
+        }
+    }
+
+    @Test
+    void clean_withRuleStats_shouldCountEveryReplacementByRule() {
+        TypographyEngine.RuleStats stats = new TypographyEngine.RuleStats();
+
+        TypographyEngine.forProfile("HU").clean("a--b -- c... \"x\" 'y' and... more", stats);
+
+        assertThat(stats.getHits(TypographyEngine.Rule.EM_DASH)).isEqualTo(1);
+        assertThat(stats.getHits(TypographyEngine.Rule.SPACED_DASH)).isEqualTo(1);
+        assertThat(stats.getHits(TypographyEngine.Rule.DASH_STYLE)).isEqualTo(1);
+        assertThat(stats.getHits(TypographyEngine.Rule.ELLIPSIS)).isEqualTo(2);
+        assertThat(stats.getHits(TypographyEngine.Rule.OUTER_QUOTES)).isEqualTo(1);
+        assertThat(stats.getHits(TypographyEngine.Rule.INNER_QUOTES)).isEqualTo(1);
+        assertThat(stats.getHits(TypographyEngine.Rule.SCENE_BREAK)).isZero();
+        assertThat(stats.getScanNanos()).isPositive();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"HU", "EN", "Shunn"})
+    void clean_withRuleStats_shouldCountTheSameInEveryMode(String profile) throws IOException {
+        String text = randomText(new Random(29), 8 * TypographyEngine.MIN_SHARD_SIZE);
+        TypographyEngine engine = TypographyEngine.forProfile(profile);
+        TypographyEngine.RuleStats sequential = new TypographyEngine.RuleStats();
+        TypographyEngine.RuleStats parallel = new TypographyEngine.RuleStats();
+        TypographyEngine.RuleStats streamed = new TypographyEngine.RuleStats();
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            engine.clean(text, sequential);
+            engine.clean(text, pool, parallel);
+            engine.clean(new StringReader(text), new StringWriter(), null, streamed);
+        } finally {
+            pool.shutdown();
+        }
+
+        for (TypographyEngine.Rule rule : TypographyEngine.Rule.values()) {
+            assertThat(parallel.getHits(rule)).as("parallel %s", rule).isEqualTo(sequential.getHits(rule));
+            assertThat(streamed.getHits(rule)).as("streamed %s", rule).isEqualTo(sequential.getHits(rule));
+        }
+    }
+
+    @Test
+    void clean_withSceneBreaks_shouldReplaceWholeLines() {
+        String result = TypographyEngine.forProfile("Shunn").clean("End.\n***\nStart.");
+
+        assertThat(result).isEqualTo("End.\n # \nStart.");
+    }
+
+    @Test
+    void clean_withUnclosedQuote_shouldLeaveQuoteUntouched() {
+        String result = TypographyEngine.forProfile("EN").clean("He said \"nothing more.");
+
+        assertThat(result).isEqualTo("He said \"nothing more.");
+    }
+
+    @Test
+    void isClean_shouldAgreeWithCleanOnRandomInput() {
+        Random random = new Random(17);
+
+        for (int iteration = 0; iteration < 20_000; iteration++) {
+            String text = randomText(random, random.nextInt(20));
+
+            for (String profile : PROFILES) {
+                TypographyEngine engine = TypographyEngine.forProfile(profile);
+                if (engine.isClean(text)) {
+                    assertThat(legacyClean(text, profile))
+                            .as("profile %s, input [%s]", profile, text)
+                            .isEqualTo(text);
+                }
+            }
+        }
+    }
+
+    @Test
+    void isClean_shouldOnlyFlagTriggersOfTheProfile() {
+        assertThat(TypographyEngine.forProfile("HU").isClean("It's a well-known fact.")).isTrue();
+        assertThat(TypographyEngine.forProfile("HU").isClean("He said \"hi\"")).isFalse();
+        assertThat(TypographyEngine.forProfile("Shunn").isClean("He said \"hi\"")).isTrue();
+        assertThat(TypographyEngine.forProfile("Shunn").isClean("End\n***\n")).isFalse();
+        assertThat(TypographyEngine.forProfile("EN").isClean("one – two")).isFalse();
+        assertThat(TypographyEngine.forProfile("EN").isClean("one — two")).isTrue();
+        assertThat(TypographyEngine.forProfile("UNKNOWN").isClean("wait...")).isFalse();
+    }
+
+    @Test
+    void clean_withAlreadyCleanText_shouldReturnSameInstance() {
+        String text = "Nothing to fix, isn't it?";
+
+        assertThat(TypographyEngine.forProfile("EN").clean(text)).isSameAs(text);
+    }
+
+    @Test
+    void clean_withEmptyText_shouldReturnSameInstance() {
+        String text = "";
+
+        assertThat(TypographyEngine.forProfile("HU").clean(text)).isSameAs(text);
+    }
+
+    @Test
+    void forProfile_withUnknownProfile_shouldReturnGenericEngine() {
+        assertThat(TypographyEngine.isKnownProfile("UNKNOWN")).isFalse();
+        assertThat(TypographyEngine.isKnownProfile(null)).isFalse();
+        assertThat(TypographyEngine.forProfile("UNKNOWN").getName()).isEqualTo("generic");
+        assertThat(TypographyEngine.forProfile("HU")).isSameAs(TypographyEngine.forProfile("HU"));
+    }
+
+    private static String randomText(Random random, int length) {
+        String alphabet = "ab -.\"'*\n\r\t—–#\u2028\u0085x";
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package org.manusmith.shell.service;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Test suite for TypographyTransformer
+ */
+class TypographyTransformerTest {
+
+    private static final String W = "xmlns:w=\"" + RunProperties.WORDML_NS + "\"";
+
+    @Test
+    void transform_withRulesSpanningRuns_shouldWriteResultIntoOriginalRuns() throws IOException {
+        String xml = paragraph("<w:r><w:rPr><w:b/></w:rPr><w:t>Azt mondta: \"</w:t></w:r>"
+                + "<w:r><w:rPr><w:i/></w:rPr><w:t xml:space=\"preserve\">igen\" és </w:t></w:r>"
+                + "<w:r><w:t>'nem'..</w:t></w:r><w:r><w:t>.</w:t></w:r>");
+
+        String result = transform("HU", xml);
+
+        assertThat(result).isEqualTo(paragraph("<w:r><w:rPr><w:b/></w:rPr><w:t>Azt mondta: „</w:t></w:r>"
+                + "<w:r><w:rPr><w:i/></w:rPr><w:t xml:space=\"preserve\">igen” és </w:t></w:r>"
+                + "<w:r><w:t>»nem«…</w:t></w:r><w:r><w:t/></w:r>"));
+    }
+
+    @Test
+    void transform_withNewEdgeSpaces_shouldPreserveThem() throws IOException {
+        String xml = paragraph("<w:r><w:t>a</w:t></w:r><w:r><w:t>--</w:t></w:r><w:r><w:t>b</w:t></w:r>"
+                + "<w:r><w:t>x -</w:t></w:r><w:r><w:t>- y</w:t></w:r>");
+
+        String result = transform("EN", xml);
+
+        assertThat(result).contains("<w:t>a</w:t></w:r><w:r><w:t>—</w:t></w:r><w:r><w:t>b</w:t>");
+        assertThat(result).contains("<w:t xml:space=\"preserve\">x </w:t>");
+    }
+
+    @Test
+    void transform_withCleanParagraph_shouldCopyItUnchanged() throws IOException {
+        String xml = paragraph("<w:r><w:t>Nothing</w:t></w:r><w:r><w:tab/><w:t xml:space=\"preserve\"> to fix</w:t></w:r>");
+
+        assertThat(transform("EN", xml)).isEqualTo(xml);
+    }
+
+    @Test
+    void redistribute_withRandomRuns_shouldReproduceCleanedText() {
+        Random random = new Random(7);
+        String alphabet = "ab -.\"'*\t";
+        for (int iteration = 0; iteration < 5000; iteration++) {
+            String profile = List.of("HU", "DE", "EN", "Shunn").get(random.nextInt(4));
+            int count = 1 + random.nextInt(5);
+            String[] pieces = new String[count];
+            int[] starts = new int[count];
+            boolean[] fixed = new boolean[count];
+            StringBuilder source = new StringBuilder();
+            for (int p = 0; p < count; p++) {
+                starts[p] = source.length();
+                fixed[p] = random.nextInt(6) == 0;
+                StringBuilder piece = new StringBuilder(fixed[p] ? "\t" : "");
+                for (int k = fixed[p] ? 0 : random.nextInt(8); k > 0; k--) {
+                    piece.append(alphabet.charAt(random.nextInt(alphabet.length() - 1)));
+                }
+                pieces[p] = piece.toString();
+                source.append(pieces[p]);
+            }
+            String cleaned = TypographyEngine.forProfile(profile).clean(source.toString());
+
+            String[] texts = TypographyTransformer.redistribute(source.toString(), starts, fixed, cleaned);
+
+            if (texts != null) {
+                StringBuilder joined = new StringBuilder();
+                for (int p = 0; p < count; p++) {
+                    joined.append(fixed[p] ? pieces[p] : texts[p]);
+                }
+                assertThat(joined.toString()).as("%s %s", profile, String.join("|", pieces)).isEqualTo(cleaned);
+            }
+        }
+    }
+
+    @Test
+    void cleanDocx_shouldFixTypographyAndKeepRunFormatting(@TempDir Path tempDir) throws IOException {
+        ConfigurationService.instance = null;
+        MetricsService.instance = null;
+        CleaningResultCache.instance = null;
+        File input = tempDir.resolve("input.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            paragraph.createRun().setText("She said \"");
+            XWPFRun bold = paragraph.createRun();
+            bold.setText("wait");
+            bold.setBold(true);
+            paragraph.createRun().setText("...\" -- then left.");
+            try (FileOutputStream out = new FileOutputStream(input)) {
+                document.write(out);
+            }
+        }
+        File output = tempDir.resolve("output.docx").toFile();
+
+        new EngineBridge().cleanDocx(input, output, "EN");
+
+        try (FileInputStream in = new FileInputStream(output);
+             XWPFDocument document = new XWPFDocument(in)) {
+            XWPFParagraph paragraph = document.getParagraphs().get(0);
+            assertThat(paragraph.getText()).isEqualTo(TypographyEngine.forProfile("EN")
+                    .clean("She said \"wait...\" -- then left."));
+            assertThat(paragraph.getRuns()).hasSize(3);
+            assertThat(paragraph.getRuns().get(1).text()).isEqualTo("wait");
+            assertThat(paragraph.getRuns().get(1).isBold()).isTrue();
+        }
+    }
+
+    private static String paragraph(String runs) {
+        return "<w:document " + W + "><w:body><w:p>" + runs + "</w:p></w:body></w:document>";
+    }
+
+    private static String transform(String profile, String xml) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TypographyTransformer(TypographyEngine.forProfile(profile), new TypographyEngine.RuleStats())
+                .transform(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), out);
+        String result = out.toString(StandardCharsets.UTF_8);
+        // The writer adds an XML declaration when the input has none
+        return result.substring(result.indexOf("?>\r\n") + 4);
+    }
+}
@@ -0,0 +1,151 @@
+package org.manusmith.shell.service;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Test suite for WordCountService and WordCounter
+ */
+class WordCountServiceTest {
+
+    private WordCountService service;
+
+    @BeforeEach
+    void setUp() {
+        // Reset singletons for clean tests
+        ConfigurationService.instance = null;
+        MetricsService.instance = null;
+        CleaningResultCache.instance = null;
+        this.service = new WordCountService();
+    }
+
+    @Test
+    void accept_withJoinersMarksAndIdeographs_shouldCountWordsLikeAWordProcessor() {
+        WordCounter counter = new WordCounter();
+
+        counter.accept("Don't stop—well-known 3.14 words... naïve café 日本語 end. 𝐀bc");
+
+        assertThat(counter.getWords()).isEqualTo(12);
+    }
+
+    @Test
+    void accept_withWordSplitAcrossChunks_shouldCountItOnce() {
+        WordCounter counter = new WordCounter();
+        char[] text = "one tw".toCharArray();
+
+        counter.accept(text, 0, text.length);
+        counter.accept("o-\uD835");
+        counter.accept("\uDC00 three");
+
+        assertThat(counter.getWords()).isEqualTo(3);
+    }
+
+    @Test
+    void countWords_withDocx_shouldJoinRunsAndBreakAtParagraphsAndTabs(@TempDir Path tempDir) throws IOException {
+        File input = tempDir.resolve("input.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            paragraph.createRun().setText("Spl");
+            paragraph.createRun().setText("it words ");
+            XWPFRun run = paragraph.createRun();
+            run.setText("before");
+            run.addTab();
+            run.setText("after");
+            document.createParagraph().createRun().setText("next");
+            try (FileOutputStream out = new FileOutputStream(input)) {
+                document.write(out);
+            }
+        }
+
+        assertThat(service.countWords(input)).isEqualTo(5);
+    }
+
+    @Test
+    void countWords_withDocxTextBox_shouldCountItOnce(@TempDir Path tempDir) throws IOException {
+        String mc = DocxTextExtractor.MARKUP_COMPATIBILITY_NS;
+        String xml = "<w:document xmlns:w=\"" + RunProperties.WORDML_NS + "\" xmlns:mc=\"" + mc + "\"><w:body><w:p>"
+                + "<w:r><w:t xml:space=\"preserve\">Kept </w:t></w:r>"
+                + "<w:r><mc:AlternateContent><mc:Choice Requires=\"wps\"><w:txbxContent><w:p><w:r><w:t>box</w:t></w:r></w:p>"
+                + "</w:txbxContent></mc:Choice><mc:Fallback><w:txbxContent><w:p><w:r><w:t>box</w:t></w:r></w:p>"
+                + "</w:txbxContent></mc:Fallback></mc:AlternateContent></w:r>"
+                + "<w:r><w:t>text</w:t></w:r></w:p></w:body></w:document>";
+        File input = tempDir.resolve("input.docx").toFile();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(input))) {
+            zip.putNextEntry(new ZipEntry("[Content_Types].xml"));
+            zip.write(("<Types><Override PartName=\"/word/document.xml\" ContentType=\""
+                    + "application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/></Types>")
+                    .getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("word/document.xml"));
+            zip.write(xml.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(service.countWords(input)).isEqualTo(3);
+    }
+
+    @Test
+    void countWords_withOdt_shouldCountBodyTextWithoutAnnotations(@TempDir Path tempDir) throws IOException {
+        File input = tempDir.resolve("input.odt").toFile();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(input))) {
+            zip.putNextEntry(new ZipEntry("content.xml"));
+            zip.write(("<office:document-content xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\""
+                    + " xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\"><office:body><office:text>"
+                    + "<text:h>Title here</text:h><text:p>one<text:s/>two<text:tab/>three"
+                    + "<office:annotation><text:p>not counted</text:p></office:annotation></text:p>"
+                    + "<text:p>four</text:p></office:text></office:body></office:document-content>")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(service.countWords(input)).isEqualTo(6);
+    }
+
+    @Test
+    void countWords_withMarkdown_shouldSkipMarkupLinkTargetsAndTags(@TempDir Path tempDir) throws IOException {
+        Path input = tempDir.resolve("input.md");
+        Files.writeString(input, "# Head\n\nSee [the link](http://example.com/a(b)) and ![img](p.png)"
+                + " <b>bold</b> a < b *em* ---\n");
+
+        assertThat(service.countWords(input.toFile())).isEqualTo(10);
+    }
+
+    @Test
+    void countWords_withLargeText_shouldCountEveryWord(@TempDir Path tempDir) throws IOException {
+        Path input = tempDir.resolve("input.txt");
+        Files.writeString(input, "word ".repeat(100_000));
+
+        assertThat(service.countWords(input.toFile())).isEqualTo(100_000);
+    }
+
+    @Test
+    void countWords_withUnsupportedFile_shouldThrowIOException(@TempDir Path tempDir) throws IOException {
+        Path input = tempDir.resolve("input.pdf");
+        Files.write(input, new byte[] {1});
+
+        assertThatThrownBy(() -> service.countWords(input.toFile()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Unsupported file type");
+    }
+
+    @Test
+    void roundShunn_shouldRoundToHundredsAndNovelsToThousands() {
+        assertThat(WordCountService.roundShunn(0)).isZero();
+        assertThat(WordCountService.roundShunn(12)).isEqualTo(100);
+        assertThat(WordCountService.roundShunn(2_345)).isEqualTo(2_300);
+        assertThat(WordCountService.roundShunn(2_350)).isEqualTo(2_400);
+        assertThat(WordCountService.roundShunn(85_499)).isEqualTo(85_000);
+    }
+}
@@ -0,0 +1,93 @@
+package org.manusmith.shell.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PreviewPipelineTest {
+
+    private PreviewPipeline<String, String> pipeline;
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void submit_withBurstOfInputs_shouldRunAndPublishOnlyLatest() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        List<String> published = new CopyOnWriteArrayList<>();
+        List<Duration> latencies = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        pipeline = new PreviewPipeline<>("test-preview", Duration.ofMillis(200),
+                input -> {
+                    runs.incrementAndGet();
+                    return input.toUpperCase();
+                },
+                result -> {
+                    published.add(result);
+                    done.countDown();
+                },
+                error -> fail("Unexpected error", error),
+                latencies::add,
+                Runnable::run);
+
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit("edit " + i);
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(300);
+        assertThat(published).containsExactly("EDIT 9");
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(latencies).hasSize(1);
+        assertThat(latencies.get(0)).isGreaterThanOrEqualTo(Duration.ofMillis(200));
+    }
+
+    @Test
+    void submit_whileRunning_shouldInterruptStaleRunAndDropItsResult() throws InterruptedException {
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        AtomicBoolean slowInterrupted = new AtomicBoolean();
+        List<String> published = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        pipeline = new PreviewPipeline<>("test-preview", Duration.ZERO,
+                input -> {
+                    if (input.equals("slow")) {
+                        slowStarted.countDown();
+                        try {
+                            Thread.sleep(10_000);
+                        } catch (InterruptedException e) {
+                            slowInterrupted.set(true);
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return input;
+                },
+                result -> {
+                    published.add(result);
+                    done.countDown();
+                },
+                error -> fail("Unexpected error", error),
+                latency -> { },
+                Runnable::run);
+
+        pipeline.submit("slow");
+        assertThat(slowStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        pipeline.submit("fast");
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(slowInterrupted).isTrue();
+        assertThat(published).containsExactly("fast");
+    }
+}